@@ -1,6 +1,8 @@
 import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.image.*;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * An extension of BufferedImages, able to be cloned, having a default positioning when drawn with supporting functions
@@ -26,6 +28,24 @@ public class AdvancedImage extends BufferedImage implements Cloneable {
      */
     public static boolean keepMetaInfo;
 
+    /**
+     * the collision mask of the image and the masks of its rotations, by degree. null until needed.
+     * Dropped, whenever the image gets drawn onto, see {@link AdvancedImage#getCollisionMask()}
+     */
+    private volatile CollisionMask mask;
+    private volatile Map<Integer, CollisionMask> rotatedMasks;
+
+    /**
+     * counts the changes of the image, see {@link AdvancedImage#invalidateCollisionMask()}
+     */
+    private volatile int version;
+
+    /**
+     * the copy of the image handed to the ui, and the version of the image it has been copied at. See {@link AdvancedImage#frozen()}
+     */
+    private AdvancedImage frozen;
+    private int frozenVersion;
+
     /**
      * creates a new Image of the given dimenstion
      * @param dimension dimension as [width, height]
@@ -523,6 +543,83 @@ public class AdvancedImage extends BufferedImage implements Cloneable {
         drawText(color, font, text, getWidth()/2, getHeight()/2);
     }
 
+    /**
+     * returns the solid pixels of the image, computed once and kept until the image gets drawn onto.
+     * Changes through {@link AdvancedImage#createGraphics()} are noticed, when the graphics are created,
+     * so do not keep them around, or call {@link AdvancedImage#invalidateCollisionMask()} after drawing
+     * @return the collision mask
+     */
+    public CollisionMask getCollisionMask() {
+        CollisionMask m = mask;
+        if (m == null) mask = m = new CollisionMask(this);
+        return m;
+    }
+
+    /**
+     * returns the solid pixels of the image rotated around its center, as it is painted, cut to the size of the image.
+     * Each rotation is computed once, see {@link AdvancedImage#getCollisionMask()}
+     * @param rotation the rotation in degrees
+     * @return the collision mask
+     */
+    public CollisionMask getCollisionMask(int rotation) {
+        rotation = Math.floorMod(rotation, 360);
+        if (rotation == 0) return getCollisionMask();
+        Map<Integer, CollisionMask> masks = rotatedMasks;
+        if (masks == null) rotatedMasks = masks = new HashMap<>();
+        synchronized (masks) {
+            CollisionMask m = masks.get(rotation);
+            if (m == null) masks.put(rotation, m = CollisionMask.rotated(this, rotation));
+            return m;
+        }
+    }
+
+    /**
+     * drops the cached collision masks, so they are computed again on the next use.
+     * Marks the image as changed, so the ui paints the new content, see {@link AdvancedImage#frozen()}
+     */
+    public void invalidateCollisionMask() {
+        mask = null;
+        rotatedMasks = null;
+        version++;
+    }
+
+    /**
+     * returns a copy of the image, which is never drawn onto, so the ui is able to paint it, while the image gets changed in place.
+     * The copy is made again only, when the image has changed since the last call, so unchanged sprites are copied once
+     * @return the copy of the current content
+     */
+    synchronized AdvancedImage frozen() {
+        int v = version;
+        AdvancedImage f = frozen;
+        if (f == null || v != frozenVersion || f.imgs != imgs || f.imgpos != imgpos) {
+            frozen = f = clone();
+            frozenVersion = v;
+        }
+        return f;
+    }
+
+    /**
+     * creates the graphics to draw onto the image. Drops the cached collision masks
+     * @return the graphics
+     */
+    @Override
+    public Graphics2D createGraphics() {
+        invalidateCollisionMask();
+        return super.createGraphics();
+    }
+
+    @Override
+    public void setRGB(int x, int y, int rgb) {
+        invalidateCollisionMask();
+        super.setRGB(x, y, rgb);
+    }
+
+    @Override
+    public void setRGB(int startX, int startY, int w, int h, int[] rgbArray, int offset, int scansize) {
+        invalidateCollisionMask();
+        super.setRGB(startX, startY, w, h, rgbArray, offset, scansize);
+    }
+
     /**
      * fetches the dimension of the image.
      * @return the images dimension as {width, height}
@@ -0,0 +1,162 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Runs many independent worlds at once, as fast as the cpu allows.
+ * Each world is created and ticked by a single worker thread, without any engine pacing it.
+ * Meant for simulations, e.g. tuning an AI by playing thousands of rounds. Use headless worlds for that, see {@link World#headless}.
+ * The worlds must not be started on an engine, so create them with {@link World#World(int, int, int, boolean, boolean)}.
+ * Only the result of each round is kept, the world itself is dropped as soon as the round is over.
+ */
+public class BatchRunner {
+
+    /**
+     * the amount of worker threads ticking the worlds
+     */
+    public final int threads;
+
+    /**
+     * Creates a new runner, using one worker per available processor
+     */
+    public BatchRunner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new runner
+     * @param threads the amount of worlds ticked at the same time
+     * @throws IllegalArgumentException when the amount of threads is less than 1
+     */
+    public BatchRunner(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("There has to be at least one thread");
+        this.threads = threads;
+    }
+
+    /**
+     * runs the given amount of rounds, each for a fixed amount of ticks.
+     * @param rounds the amount of worlds to run
+     * @param factory creates a new world for each round, which is not started
+     * @param ticks the amount of ticks each world runs for
+     * @param result extracts the result of a finished round. Do not return the world itself, as all worlds would be kept until the end of the batch
+     * @return the results of all rounds, in the order they were started, and the throughput
+     * @throws IllegalArgumentException when the amount of rounds or ticks is negative
+     * @throws RuntimeException when a round threw an exception
+     */
+    public <W extends World, R> Result<R> run(int rounds, Supplier<W> factory, long ticks, Function<W, R> result) {
+        return run(rounds, factory, w -> false, ticks, result);
+    }
+
+    /**
+     * runs the given amount of rounds, each until it is finished or the maximum amount of ticks is reached.
+     * @param rounds the amount of worlds to run
+     * @param factory creates a new world for each round, which is not started
+     * @param finished checked before every tick, if the round is over
+     * @param maxTicks the maximum amount of ticks a single world runs for
+     * @param result extracts the result of a finished round. Do not return the world itself, as all worlds would be kept until the end of the batch
+     * @return the results of all rounds, in the order they were started, and the throughput
+     * @throws IllegalArgumentException when the amount of rounds or ticks is negative
+     * @throws RuntimeException when a round threw an exception
+     */
+    public <W extends World, R> Result<R> run(int rounds, Supplier<W> factory, Predicate<W> finished, long maxTicks, Function<W, R> result) {
+        if (rounds < 0 || maxTicks < 0) throw new IllegalArgumentException("Rounds and ticks must not be negative");
+        AtomicInteger cnt = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "Batch-" + cnt.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        LongAdder ticks = new LongAdder();
+        List<Callable<R>> tasks = new ArrayList<>(rounds);
+        for (int i = 0; i < rounds; i++) {
+            tasks.add(() -> {
+                W w = factory.get();
+                // in case the factory handed out a world, which has been started anyway
+                w.stop();
+                long t = 0;
+                while (t < maxTicks && !finished.test(w)) {
+                    w._tick();
+                    t++;
+                }
+                ticks.add(t);
+                return result.apply(w);
+            });
+        }
+        long start = System.nanoTime();
+        try {
+            List<R> results = new ArrayList<>(rounds);
+            for (Future<R> f : pool.invokeAll(tasks)) {
+                results.add(f.get());
+            }
+            return new Result<>(results, ticks.sum(), System.nanoTime() - start);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while running the batch", e);
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException("Error while running a round", e.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * The outcome of a batch
+     * @param <R> the type of the result of each round
+     */
+    public static class Result<R> {
+
+        /**
+         * the results of each round, in the order the rounds were started
+         */
+        public final List<R> results;
+
+        /**
+         * the amount of ticks executed by all worlds together
+         */
+        public final long ticks;
+
+        /**
+         * the time it took to run all rounds in nanoseconds
+         */
+        public final long nanos;
+
+        /**
+         * Creates a new result
+         * @param results the results of each round
+         * @param ticks the amount of ticks of all worlds together
+         * @param nanos the time it took in nanoseconds
+         */
+        Result(List<R> results, long ticks, long nanos) {
+            this.results = results;
+            this.ticks = ticks;
+            this.nanos = nanos;
+        }
+
+        /**
+         * @return the amount of ticks executed per second by all worlds together
+         */
+        public double getTicksPerSecond() {
+            return nanos == 0? 0 : ticks * 1e9 / nanos;
+        }
+
+        /**
+         * @return the amount of rounds, the throughput and the time it took
+         */
+        @Override
+        public String toString() {
+            return String.format("%d rounds, %d ticks in %.3fs (%.1f ticks/s)", results.size(), ticks, nanos/1e9, getTicksPerSecond());
+        }
+    }
+}
@@ -0,0 +1,338 @@
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds the objects touching each other, without checking every pair of objects (sweep and prune).
+ * The bounding boxes of all objects with the default shape are kept sorted by their left border,
+ * so only the objects overlapping on the x axis are looked at.
+ * As objects move little between two checks, the order stays almost the same and is fixed cheaply.
+ *
+ * Objects with a custom shape, i.e. overwriting {@link WorldObj#getShape()} or {@link WorldObj#isTouching(WorldObj)},
+ * are kept aside and checked by their own {@link WorldObj#isTouching(WorldObj)} on every query.
+ *
+ * Objects with precise collision have their pixels compared, once their bounds overlap, see {@link WorldObj#setPreciseCollision(boolean)}.
+ *
+ * Objects moved by their setters are updated right before the next query.
+ * Objects moved by writing their fields directly are noticed by the first query of the next tick.
+ * Objects removed during a tick stay in here until the end of it, but are skipped by all queries.
+ */
+public class Broadphase {
+
+    /**
+     * the world the objects are in
+     */
+    private final World world;
+
+    /**
+     * the objects with the default shape, sorted by the left border of their bounds. Removed objects leave a null behind
+     */
+    private WorldObj[] sorted = new WorldObj[64];
+
+    /**
+     * the amount of entries in sorted, including the removed ones
+     */
+    private int size;
+
+    /**
+     * the amount of removed objects, which left a null behind
+     */
+    private int holes;
+
+    /**
+     * the objects with a custom shape
+     */
+    private final Set<WorldObj> custom = new LinkedHashSet<>();
+
+    /**
+     * the objects, which moved since the last query
+     */
+    private final List<WorldObj> dirty = new ArrayList<>();
+
+    /**
+     * the widest bounds of all objects. Only shrinks, when all bounds are recomputed
+     */
+    private int maxWidth;
+
+    /**
+     * the version of the bounds of the world, the bounds have been computed with, see {@link World#boundsVersion}
+     */
+    private int version = -1;
+
+    /**
+     * the tick of the world, all objects have been checked for direct changes of their fields the last time
+     */
+    private long checkedTick = -1;
+
+    /**
+     * Creates a new broadphase, containing all objects of the world
+     * @param world the world
+     * @param objs the objects of the world
+     */
+    Broadphase(World world, Iterable<WorldObj> objs) {
+        this.world = world;
+        for (WorldObj o : objs) add(o);
+    }
+
+    /**
+     * checks if the objects of the class are checked by their own {@link WorldObj#isTouching(WorldObj)}
+     * @param o the object
+     * @return if the class overwrites the shape or collision check of the object
+     */
+    static boolean hasCustomShape(WorldObj o) {
+        return CUSTOM.get(o.getClass());
+    }
+
+    /**
+     * Remembers for every class, if it overwrites {@link WorldObj#getShape()} or {@link WorldObj#isTouching(WorldObj)}
+     */
+    private static final ClassValue<Boolean> CUSTOM = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return Utils.overrides(type, WorldObj.class, "getShape") || Utils.overrides(type, WorldObj.class, "isTouching", WorldObj.class);
+        }
+    };
+
+    /**
+     * adds an object
+     * @param o the object
+     */
+    synchronized void add(WorldObj o) {
+        if (hasCustomShape(o)) {
+            custom.add(o);
+            return;
+        }
+        if (size == sorted.length) compact(sorted.length * 2);
+        o.sapIndex = size;
+        sorted[size++] = o;
+        moved(o);
+    }
+
+    /**
+     * removes an object
+     * @param o the object
+     */
+    synchronized void remove(WorldObj o) {
+        if (o.sapIndex < 0) {
+            custom.remove(o);
+            return;
+        }
+        sorted[o.sapIndex] = null;
+        o.sapIndex = -1;
+        holes++;
+    }
+
+    /**
+     * marks the bounds of the object as outdated
+     * @param o the object
+     */
+    synchronized void moved(WorldObj o) {
+        if (o.sapIndex < 0 || o.sapDirty) return;
+        o.sapDirty = true;
+        dirty.add(o);
+    }
+
+    /**
+     * removes the holes left by removed objects
+     * @param capacity the length of the new array
+     */
+    private void compact(int capacity) {
+        WorldObj[] objs = new WorldObj[capacity];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (sorted[i] == null) continue;
+            sorted[i].sapIndex = n;
+            objs[n++] = sorted[i];
+        }
+        sorted = objs;
+        size = n;
+        holes = 0;
+    }
+
+    /**
+     * brings the bounds and the order of all objects up to date
+     */
+    private void update() {
+        int v = world.boundsVersion;
+        boolean all = v != version;
+        if (all || checkedTick != world.ticks) {
+            // notice objects moved by writing their fields
+            for (int i = 0; i < size; i++) {
+                WorldObj o = sorted[i];
+                if (o == null || o.sapDirty || o.world != world) continue;
+                o.updateShape();
+                if (all || o.shapeMinX != o.boundsMinX || o.shapeMinY != o.boundsMinY || o.shapeMaxX != o.boundsMaxX || o.shapeMaxY != o.boundsMaxY) {
+                    o.sapDirty = true;
+                    dirty.add(o);
+                }
+            }
+            checkedTick = world.ticks;
+        }
+        version = v;
+        if (holes > 0) compact(sorted.length);
+        if (all) maxWidth = 0;
+        for (WorldObj o : dirty) {
+            o.sapDirty = false;
+            if (o.sapIndex < 0) continue;
+            o.updateShape();
+            o.boundsMinX = o.shapeMinX;
+            o.boundsMinY = o.shapeMinY;
+            o.boundsMaxX = o.shapeMaxX;
+            o.boundsMaxY = o.shapeMaxY;
+            maxWidth = Math.max(maxWidth, o.boundsMaxX - o.boundsMinX);
+            resort(o);
+        }
+        dirty.clear();
+    }
+
+    /**
+     * moves the object to its place in the order after its bounds changed
+     * @param o the object
+     */
+    private void resort(WorldObj o) {
+        int i = o.sapIndex;
+        while (i > 0 && sorted[i-1].boundsMinX > o.boundsMinX) {
+            sorted[i] = sorted[i-1];
+            sorted[i].sapIndex = i;
+            i--;
+        }
+        while (i < size-1 && sorted[i+1].boundsMinX < o.boundsMinX) {
+            sorted[i] = sorted[i+1];
+            sorted[i].sapIndex = i;
+            i++;
+        }
+        sorted[i] = o;
+        o.sapIndex = i;
+    }
+
+    /**
+     * collects the objects touching the given one
+     * @param o the object
+     * @param cls the class or interface of the touching objects. Any if null
+     * @param max the maximum amount of objects to collect
+     * @param out the list the touching objects are added to
+     */
+    synchronized void touching(WorldObj o, Class<?> cls, int max, List<WorldObj> out) {
+        update();
+        int minX, minY, maxX, maxY;
+        if (o.sapIndex < 0) {
+            o.updateShape();
+            minX = o.shapeMinX;
+            minY = o.shapeMinY;
+            maxX = o.shapeMaxX;
+            maxY = o.shapeMaxY;
+        }
+        else {
+            minX = o.boundsMinX;
+            minY = o.boundsMinY;
+            maxX = o.boundsMaxX;
+            maxY = o.boundsMaxY;
+        }
+        if (minX < maxX && minY < maxY) {
+            for (int i = firstCandidate(minX - maxWidth); i < size && out.size() < max; i++) {
+                WorldObj c = sorted[i];
+                if (c.boundsMinX >= maxX) break;
+                if (c != o && c.world == world && c.boundsMaxX > minX && c.boundsMinY < maxY && c.boundsMaxY > minY
+                        && c.boundsMinX < c.boundsMaxX && c.boundsMinY < c.boundsMaxY
+                        && (cls == null || cls.isInstance(c)) && WorldObj.pixelsTouch(o, c)) out.add(c);
+            }
+        }
+        for (WorldObj c : custom) {
+            if (out.size() >= max) break;
+            if (c == o || c.world != world || (cls != null && !cls.isInstance(c))) continue;
+            // the bounds of the custom shape are cheap, compared to the exact check
+            if (minX < maxX && minY < maxY && !c.getShape().intersects(minX, minY, maxX - minX, maxY - minY)) continue;
+            if (o.isTouching(c)) out.add(c);
+        }
+    }
+
+    /**
+     * collects the objects covering the given point, see {@link WorldObj#isAt(int, int, boolean)}.
+     * Only the objects, whose left border lies within the widest bounds left of the point, are looked at
+     * @param x x coordinate in the frame
+     * @param y y coordinate in the frame
+     * @param out the list the objects are added to
+     */
+    synchronized void at(int x, int y, List<WorldObj> out) {
+        update();
+        for (int i = firstCandidate(x - maxWidth + 1); i < size; i++) {
+            WorldObj c = sorted[i];
+            if (c.boundsMinX > x) break;
+            if (c.world == world && c.boundsMaxX > x && c.boundsMinY <= y && c.boundsMaxY > y) out.add(c);
+        }
+        for (WorldObj c : custom) {
+            if (c.world == world && c.getShape().contains(x, y)) out.add(c);
+        }
+    }
+
+    /**
+     * collects all pairs of touching objects, which collide by their layers, see {@link WorldObj#setCollisionLayers(int, int)}.
+     * The objects with the default shape are swept once from left to right, so every pair is only checked once.
+     * @param out the list both objects of each pair are added to, one after another
+     */
+    synchronized void collectPairs(List<WorldObj> out) {
+        update();
+        for (int i = 0; i < size; i++) {
+            WorldObj a = sorted[i];
+            if (a.getCollisionLayers() == 0 || a.world != world || a.boundsMinX >= a.boundsMaxX || a.boundsMinY >= a.boundsMaxY) continue;
+            for (int j = i + 1; j < size; j++) {
+                WorldObj b = sorted[j];
+                if (b.boundsMinX >= a.boundsMaxX) break;
+                if (b.world == world && b.boundsMaxX > a.boundsMinX && b.boundsMinY < a.boundsMaxY && b.boundsMaxY > a.boundsMinY
+                        && b.boundsMinX < b.boundsMaxX && b.boundsMinY < b.boundsMaxY && WorldObj.collides(a, b) && WorldObj.pixelsTouch(a, b)) {
+                    out.add(a);
+                    out.add(b);
+                }
+            }
+        }
+        if (custom.isEmpty()) return;
+        List<WorldObj> colliding = new ArrayList<>();
+        for (WorldObj c : custom) {
+            if (c.getCollisionLayers() != 0 && c.world == world) colliding.add(c);
+        }
+        for (int i = 0; i < colliding.size(); i++) {
+            WorldObj c = colliding.get(i);
+            Rectangle r = c.getShape().getBounds();
+            for (int j = firstCandidate(r.x - maxWidth); j < size; j++) {
+                WorldObj b = sorted[j];
+                if (b.boundsMinX >= r.x + r.width) break;
+                if (b.world == world && WorldObj.collides(c, b) && c.isTouching(b)) {
+                    out.add(c);
+                    out.add(b);
+                }
+            }
+            for (int j = i + 1; j < colliding.size(); j++) {
+                WorldObj d = colliding.get(j);
+                if (WorldObj.collides(c, d) && c.isTouching(d)) {
+                    out.add(c);
+                    out.add(d);
+                }
+            }
+        }
+    }
+
+    /**
+     * finds the first object, whose left border is not left of the given position
+     * @param minX the position
+     * @return the index of the object
+     */
+    private int firstCandidate(int minX) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid].boundsMinX < minX) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * @return the amount of objects with the default shape and with a custom shape
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("%d objects, %d with custom shape", size - holes, custom.size());
+    }
+}
@@ -0,0 +1,153 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * The solid pixels of a sprite, packed into bits, 64 pixels per long.
+ * Two masks are compared a whole word at a time, so a pixel perfect check costs about as much as comparing rows instead of pixels.
+ * See {@link AdvancedImage#getCollisionMask()} and {@link WorldObj#setPreciseCollision(boolean)}
+ */
+public class CollisionMask {
+
+    /**
+     * the size of the mask in pixels
+     */
+    public final int width, height;
+
+    /**
+     * the amount of longs per row
+     */
+    private final int stride;
+
+    /**
+     * the rows of the mask one after another. The lowest bit of a word is its leftmost pixel. Bits right of the width are always 0
+     */
+    private final long[] bits;
+
+    /**
+     * Creates the mask of an image, counting every pixel, which is not fully transparent, as solid
+     * @param img the image
+     */
+    public CollisionMask(BufferedImage img) {
+        this(img, 0);
+    }
+
+    /**
+     * Creates the mask of an image
+     * @param img the image
+     * @param alphaThreshold the pixels with an alpha value above the threshold are solid
+     * @throws IllegalArgumentException when the threshold is not between 0 and 254
+     */
+    public CollisionMask(BufferedImage img, int alphaThreshold) {
+        if (alphaThreshold < 0 || alphaThreshold > 254) throw new IllegalArgumentException("Threshold has to be between 0 and 254");
+        width = img.getWidth();
+        height = img.getHeight();
+        stride = (width + 63) >>> 6;
+        bits = new long[stride * height];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            img.getRGB(0, y, width, 1, row, 0, width);
+            int base = y * stride;
+            for (int x = 0; x < width; x++) {
+                if ((row[x] >>> 24) > alphaThreshold) bits[base + (x >>> 6)] |= 1L << (x & 63);
+            }
+        }
+    }
+
+    /**
+     * Creates the mask of an image rotated around its center, cut to the size of the unrotated image.
+     * The image is rotated the same way, as when it is painted, see {@link AdvancedImage#rotate(double)}
+     * @param img the image
+     * @param rotation the rotation in degrees
+     * @return the mask
+     */
+    static CollisionMask rotated(BufferedImage img, int rotation) {
+        int w = img.getWidth(), h = img.getHeight();
+        BufferedImage rotated = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = rotated.createGraphics();
+        g.rotate(Math.toRadians(rotation), w / 2, h / 2);
+        g.drawImage(img, 0, 0, null);
+        g.dispose();
+        return new CollisionMask(rotated);
+    }
+
+    /**
+     * @param x x position of the pixel
+     * @param y y position of the pixel
+     * @return if the pixel is solid. false outside of the mask
+     */
+    public boolean get(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return false;
+        return (bits[y * stride + (x >>> 6)] & (1L << (x & 63))) != 0;
+    }
+
+    /**
+     * returns 64 pixels of a row as a word, starting at the given pixel
+     * @param y the row
+     * @param x x position of the first pixel. May be outside the mask
+     * @return the pixels, 0 for the ones outside the mask
+     */
+    private long word(int y, int x) {
+        if (x <= -64 || x >= width) return 0;
+        int base = y * stride;
+        if (x < 0) return bits[base] << -x;
+        int i = x >>> 6, shift = x & 63;
+        long w = bits[base + i] >>> shift;
+        if (shift != 0 && i + 1 < stride) w |= bits[base + i + 1] << (64 - shift);
+        return w;
+    }
+
+    /**
+     * checks if two masks have a solid pixel at the same position
+     * @param a the first mask
+     * @param ax x position of the top left corner of the first mask
+     * @param ay y position of the top left corner of the first mask
+     * @param b the second mask
+     * @param bx x position of the top left corner of the second mask
+     * @param by y position of the top left corner of the second mask
+     * @return if the masks overlap
+     */
+    public static boolean overlaps(CollisionMask a, int ax, int ay, CollisionMask b, int bx, int by) {
+        // everything relative to the first mask
+        int dx = bx - ax, dy = by - ay;
+        int minX = Math.max(0, dx), maxX = Math.min(a.width, dx + b.width);
+        int minY = Math.max(0, dy), maxY = Math.min(a.height, dy + b.height);
+        if (minX >= maxX || minY >= maxY) return false;
+        int first = minX >>> 6, last = (maxX - 1) >>> 6;
+        for (int y = minY; y < maxY; y++) {
+            int row = y * a.stride;
+            for (int i = first; i <= last; i++) {
+                long w = a.bits[row + i];
+                if (w != 0 && (w & b.word(y - dy, (i << 6) - dx)) != 0) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * checks if the mask has a solid pixel within the given rectangle
+     * @param minX x position of the left border, relative to the mask, inclusive
+     * @param minY y position of the top border, relative to the mask, inclusive
+     * @param maxX x position of the right border, relative to the mask, exclusive
+     * @param maxY y position of the bottom border, relative to the mask, exclusive
+     * @return if any pixel in the rectangle is solid
+     */
+    public boolean any(int minX, int minY, int maxX, int maxY) {
+        minX = Math.max(0, minX);
+        minY = Math.max(0, minY);
+        maxX = Math.min(width, maxX);
+        maxY = Math.min(height, maxY);
+        if (minX >= maxX || minY >= maxY) return false;
+        int first = minX >>> 6, last = (maxX - 1) >>> 6;
+        long firstMask = -1L << (minX & 63), lastMask = -1L >>> (63 - ((maxX - 1) & 63));
+        for (int y = minY; y < maxY; y++) {
+            int row = y * stride;
+            for (int i = first; i <= last; i++) {
+                long w = bits[row + i];
+                if (i == first) w &= firstMask;
+                if (i == last) w &= lastMask;
+                if (w != 0) return true;
+            }
+        }
+        return false;
+    }
+}
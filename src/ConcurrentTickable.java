@@ -0,0 +1,9 @@
+/**
+ * a marker interface for objects, which are safe to be ticked at the same time as other objects.
+ * Objects implementing it are split across the {@link World#tickPool} and ticked in no particular order.
+ * Their tick() must not change the world or other objects without taking care of the synchronization itself.
+ * They may move, rotate and change the image of themselves by the setters though: the indexes of the world are updated
+ * by the tick thread, once all of them are done, so queries of the world see their previous position until then.
+ */
+public interface ConcurrentTickable extends Tickable {
+}
@@ -1,5 +1,7 @@
 import java.awt.Font;
 import java.awt.Color;
+import java.awt.GraphicsEnvironment;
+import java.awt.HeadlessException;
 
 /**
  * A class to ask the User for input.
@@ -61,11 +63,6 @@ public class Dialog extends World {
                         result = tf.text;
                         gotResult = true;
                     }
-
-                    @Override
-                    public void tick() {
-
-                    }
                 };
                 apply.setText("apply");
                 apply.setSize(64,32);
@@ -80,22 +77,12 @@ public class Dialog extends World {
                         result = true;
                         gotResult = true;
                     }
-
-                    @Override
-                    public void tick() {
-
-                    }
                 }, abord = new Button() {
                     @Override
                     public void clickEvent(MouseEventInfo e) {
                         result = false;
                         gotResult = true;
                     }
-
-                    @Override
-                    public void tick() {
-
-                    }
                 };
                 confirm.setText("Yes");
                 confirm.setFont(font);
@@ -123,18 +110,26 @@ public class Dialog extends World {
      * @param initValue the initial Value, first displayed in the textfield (does not apply for {@link Dialog#askConfirm(String, String...)}
      * @param type the type of dialog opened
      * @return the users response
+     * @throws HeadlessException when there is no display, as nobody could ever answer the dialog
      */
     public static Object ask(String dialog, String initValue, int type) {
+        // headless worlds are never displayed, so the dialog would wait forever
+        if (GraphicsEnvironment.isHeadless()) throw new HeadlessException("Dialogs need a display");
+        World origin = mainframe == null? null : mainframe.world;
         Dialog d = new Dialog(dialog, initValue, type);
-        World origin = switchWorld(d).get(0);
+        // usually asked from a tick of the shared engine, which waits for the answer and can not tick the dialog meanwhile
+        d.setWorldTps(d.engine.tps);
+        switchWorld(d);
         while (!d.gotResult) {
             try {
-                Thread.sleep((long)(1000/e.tps));
+                Thread.sleep((long)(1000/d.engine.tps));
             } catch (InterruptedException interruptedException) {
                 interruptedException.printStackTrace();
             }
         }
-        switchWorld(origin);
+        if (origin != null) switchWorld(origin);
+        d.stop();
+        d.getEngine().stop();
         return d.result;
     }
 
@@ -143,6 +138,7 @@ public class Dialog extends World {
      * @param dialog the Message displayed to the user
      * @param initValue the initial value, displayed in the textfield
      * @return the users response
+     * @throws HeadlessException when there is no display
      */
     public static String askString(String dialog, String... initValue) {
         return (String)ask(dialog, initValue.length == 0?"" : initValue[0], 0);
@@ -153,6 +149,7 @@ public class Dialog extends World {
      * @param dialog the Message displayed to the user
      * @param initValue just leave it empty. Doesn't do anything
      * @return the users response
+     * @throws HeadlessException when there is no display
      */
     public static boolean askConfirm(String dialog, String... initValue) {
         return (boolean) ask(dialog, initValue.length == 0?"":initValue[0], 2);
@@ -163,6 +160,7 @@ public class Dialog extends World {
      * @param dialog The message diplayed to the user
      * @param initValue The initial Value, displayed in the Textfield
      * @return the users response
+     * @throws HeadlessException when there is no display
      */
     public static int askNumber(String dialog, String... initValue) {
         return (int)ask(dialog, initValue.length == 0?"" : initValue[0], 1);
@@ -1,5 +1,10 @@
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
 import java.util.stream.Collectors;
 
 public class Engine {
@@ -16,10 +21,40 @@ public class Engine {
     public long tick;
 
     /**
-     * the amount of milliseconds it took to execute the last tick
+     * the amount of milliseconds between the start of the last two ticks
      */
     public long latestMspt;
 
+    /**
+     * the amount of nanoseconds between the start of the last two ticks
+     */
+    public long latestIntervalNanos;
+
+    /**
+     * the amount of nanoseconds it took to execute the last tick
+     */
+    public long latestTickNanos;
+
+    /**
+     * The time in nanoseconds, each tick took to execute, over the last {@link Engine#STATISTICS_SECONDS} seconds
+     */
+    public final TimingWindow tickDurations = new TimingWindow(STATISTICS_SIZE, STATISTICS_SECONDS * 1_000_000_000L);
+
+    /**
+     * The time in nanoseconds between the start of two ticks, over the last {@link Engine#STATISTICS_SECONDS} seconds
+     */
+    public final TimingWindow tickIntervals = new TimingWindow(STATISTICS_SIZE, STATISTICS_SECONDS * 1_000_000_000L);
+
+    /**
+     * the amount of seconds, the tick statistics reach back
+     */
+    public static final int STATISTICS_SECONDS = 10;
+
+    /**
+     * the maximum amount of ticks kept in the tick statistics. Only reached, when running above 400 tps
+     */
+    public static final int STATISTICS_SIZE = 4096;
+
     /**
      * The amount of ticks, executed every second, when the engine is running
      */
@@ -41,53 +76,331 @@ public class Engine {
      */
     public Collection<Tickable> tickables;
 
+    /**
+     * The way the ticks are executed.
+     * Can be changed while the engine is running, the change takes effect with the next tick.
+     * Default value: {@link TickMode#THREAD_PER_TICK}
+     */
+    public TickMode tickMode = TickMode.THREAD_PER_TICK;
+
+    /**
+     * The executor, ticks are handed to when running in {@link TickMode#EXECUTOR} mode.
+     * If none is set, a single long-lived tick thread is created once it is needed.
+     */
+    public ExecutorService tickExecutor;
+
+    /**
+     * What to do, when a tick takes longer than 1000/tps milliseconds.
+     * Default value: {@link OverrunPolicy#STRETCH}
+     */
+    public OverrunPolicy overrunPolicy = OverrunPolicy.STRETCH;
+
+    /**
+     * The maximum amount of ticks which are executed back to back to catch up with the schedule, when using {@link OverrunPolicy#CATCH_UP}.
+     * Ticks exceeding this burst are dropped and counted as skipped.
+     * Default value: 5
+     */
+    public int maxCatchUpTicks = 5;
+
+    /**
+     * If the engine ticks as fast as possible, ignoring the tps.
+     * Default value: false
+     */
+    public volatile boolean fastForward;
+
+    /**
+     * The amount of ticks which took longer than 1000/tps milliseconds to execute. See {@link Engine#getMissedDeadlines()}
+     */
+    private volatile long lateTicks;
+
+    /**
+     * The amount of ticks which have been dropped to get back on schedule. See {@link Engine#getSkippedTicks()}
+     */
+    private volatile long skippedTicks;
+
+    /**
+     * The profiler measuring the ticks of this engine and its worlds.
+     * null while profiling is disabled, which is the default.
+     */
+    public volatile TickProfiler profiler;
+
+    /**
+     * The pool, engines running in {@link TickMode#EXECUTOR} mode are able to share. Created once it is needed.
+     */
+    private static ExecutorService sharedTickPool;
+
     /**
      * Creates a new Engine to help with ticking
      * @param tps amount of ticks per second
      */
     public Engine(double tps) {
+        this(tps, TickMode.THREAD_PER_TICK);
+    }
+
+    /**
+     * Creates a new Engine to help with ticking
+     * @param tps amount of ticks per second
+     * @param tickMode the way the ticks are executed
+     */
+    public Engine(double tps, TickMode tickMode) {
         tickables = new CopyOnWriteArrayList<>();
         this.tps = tps;
+        this.tickMode = tickMode;
         ttime = System.currentTimeMillis();
         start();
     }
 
     /**
-     * Main function of the Engine. Each loop, a new Tickthread is started, Afterwards it waits mspt milliseconds and terminates the thread afterwards. (Support for switching between lag and skipping may be implemented later)
-     * Prints error message, when errors occur during the loop, but does not terminate
+     * Main function of the Engine.
+     * Each loop a tick is executed the way the {@link TickMode} says and waited for, so ticks do not overlap,
+     * except for ticks running longer than 1000/tps milliseconds in {@link TickMode#THREAD_PER_TICK} mode.
+     * Afterwards the engine waits for the deadline of the next tick, measured by {@link System#nanoTime()}, unless it is fast forwarding.
+     * If a tick took longer than 1000/tps milliseconds, the {@link OverrunPolicy} decides how to get back on schedule.
+     * Prints error message, when errors occur during a tick, but keeps ticking on schedule. Stops, when the engine thread gets interrupted
      */
     public void loop() {
-        long cur;
+        long cur, start, period, behind, lastStart = 0;
+        long deadline = System.nanoTime();
         tick = 0;
         while (started) {
             try {
-                TickEngine t = new TickEngine(this, tick++);
-                t.start();
-                Thread.sleep((long) (1000/tps));
-                t.join((int)(1000/tps));
-                cur = System.currentTimeMillis();
-                latestMspt = cur-ttime;
-                ttime = cur;
+                period = (long) (1_000_000_000L/tps);
+                start = System.nanoTime();
+                boolean finished = true;
+                try {
+                    finished = runTick(period);
+                }
+                catch (RuntimeException e) {
+                    // a failing tick must not throw the following ticks off schedule
+                    System.err.println("Error while ticking");
+                    if (terminateOnError) throw e;
+                    e.printStackTrace();
+                }
+                tick++;
+                cur = System.nanoTime();
+                latestTickNanos = cur - start;
+                tickDurations.add(latestTickNanos, cur);
+                if (lastStart != 0) {
+                    latestIntervalNanos = start - lastStart;
+                    latestMspt = latestIntervalNanos / 1_000_000;
+                    tickIntervals.add(latestIntervalNanos, cur);
+                }
+                lastStart = start;
+                if (fastForward) {
+                    // no waiting at all, the schedule starts over once fast forwarding ends
+                    deadline = cur;
+                }
+                else {
+                    if (!finished || cur - start > period) lateTicks++;
+                    deadline += period;
+                    if (cur > deadline) {
+                        // amount of tick slots which are already over, including the one of the next tick
+                        behind = (cur - deadline) / period + 1;
+                        switch (overrunPolicy) {
+                            case CATCH_UP:
+                                if (behind > maxCatchUpTicks) {
+                                    skippedTicks += behind - maxCatchUpTicks;
+                                    deadline += (behind - maxCatchUpTicks) * period;
+                                }
+                                break;
+                            case SKIP:
+                                skippedTicks += behind;
+                                deadline += behind * period;
+                                break;
+                            case STRETCH:
+                            default:
+                                deadline = cur;
+                                break;
+                        }
+                    }
+                    sleepUntil(deadline);
+                }
+                ttime = System.currentTimeMillis();
             }
             catch (InterruptedException e) {
+                // the engine thread is asked to stop, so keep the flag for its owner and stop ticking
                 Thread.currentThread().interrupt();
-                System.err.println("Error while ticking");;
-                e.printStackTrace();
+                break;
             }
             catch (Exception e) {
-                Thread.currentThread().interrupt();
-                System.err.println("Error while ticking");;
+                System.err.println("Error while ticking");
                 if (terminateOnError) throw e;
                 e.printStackTrace();
             }
         }
     }
 
+    /**
+     * executes a single tick on the thread of the current {@link TickMode} and waits for it to finish.
+     * In {@link TickMode#THREAD_PER_TICK} mode, the engine waits at most one period, see {@link TickMode#THREAD_PER_TICK}
+     * @param period the amount of nanoseconds between two ticks
+     * @return if the tick has finished
+     * @throws InterruptedException when the engine thread got interrupted while waiting for the tick
+     */
+    private boolean runTick(long period) throws InterruptedException {
+        if (tickMode == TickMode.THREAD_PER_TICK) {
+            TickEngine t = new TickEngine(this, tick);
+            t.start();
+            // a tick may wait for the following ones, e.g. while asking a Dialog, so waiting for it without a limit could stall the engine for good
+            t.join(period / 1_000_000, (int) (period % 1_000_000));
+            return !t.isAlive();
+        }
+        if (tickMode == TickMode.DEDICATED) {
+            tick();
+            return true;
+        }
+        try {
+            getTickExecutor().submit(this::tick).get();
+            return true;
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * parks the current thread until the given deadline has been reached.
+     * Returns immediately, if the deadline has already passed.
+     * @param deadline the deadline as {@link System#nanoTime()} value
+     * @throws InterruptedException when the thread got interrupted while waiting
+     */
+    private static void sleepUntil(long deadline) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    /**
+     * returns the executor used in {@link TickMode#EXECUTOR} mode.
+     * creates a single long-lived tick thread, if no executor has been set.
+     * @return the executor ticks are submitted to
+     */
+    public synchronized ExecutorService getTickExecutor() {
+        if (tickExecutor == null) {
+            tickExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "Tick");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return tickExecutor;
+    }
+
+    /**
+     * returns a pool of tick threads, multiple engines are able to share.
+     * It has one thread per available processor, so worlds ticking on it at the same time do not stall each other, as long as there are enough cores.
+     * @return the shared pool
+     */
+    public static synchronized ExecutorService sharedTickPool() {
+        if (sharedTickPool == null) {
+            sharedTickPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                private int cnt;
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "Tick-pool-" + cnt++);
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return sharedTickPool;
+    }
+
+    /**
+     * sets the way ticks are executed. Takes effect with the next tick.
+     * @param tickMode the new mode
+     * @throws IllegalArgumentException when the mode is null
+     */
+    public void setTickMode(TickMode tickMode) {
+        if (tickMode == null) throw new IllegalArgumentException("Tick mode must not be null");
+        this.tickMode = tickMode;
+    }
+
+    /**
+     * sets what to do, when a tick takes longer than 1000/tps milliseconds.
+     * @param overrunPolicy the new policy
+     * @throws IllegalArgumentException when the policy is null
+     */
+    public void setOverrunPolicy(OverrunPolicy overrunPolicy) {
+        if (overrunPolicy == null) throw new IllegalArgumentException("Overrun policy must not be null");
+        this.overrunPolicy = overrunPolicy;
+    }
+
+    /**
+     * sets the maximum amount of ticks executed back to back when catching up.
+     * @param maxCatchUpTicks the maximum burst size
+     * @throws IllegalArgumentException when the amount is less than 1
+     */
+    public void setMaxCatchUpTicks(int maxCatchUpTicks) {
+        if (maxCatchUpTicks < 1) throw new IllegalArgumentException("Catch up burst must be at least 1 tick");
+        this.maxCatchUpTicks = maxCatchUpTicks;
+    }
+
+    /**
+     * lets the engine tick as fast as possible, or go back to ticking at the set tps
+     * @param fastForward if the engine should ignore the tps
+     */
+    public void setFastForward(boolean fastForward) {
+        this.fastForward = fastForward;
+    }
+
+    /**
+     * resets the counters of late and skipped ticks
+     */
+    public void resetOverrunCounters() {
+        lateTicks = 0;
+        skippedTicks = 0;
+    }
+
+    /**
+     * sets the executor the ticks are handed to and switches to the {@link TickMode#EXECUTOR} mode.
+     * The executor is not shut down by the engine.
+     * @param executor the executor to use
+     * @throws IllegalArgumentException when the executor is null
+     */
+    public synchronized void setTickExecutor(ExecutorService executor) {
+        if (executor == null) throw new IllegalArgumentException("Executor must not be null");
+        tickExecutor = executor;
+        tickMode = TickMode.EXECUTOR;
+    }
+
     /**
      * gets called every tick. calls all objects which are said to be executed
      */
     public void tick() {
-        tickables.forEach(Tickable::_tick);
+        TickProfiler p = profiler;
+        if (p == null) {
+            tickables.forEach(Tickable::_tick);
+            return;
+        }
+        long start = System.nanoTime();
+        for (Tickable t : tickables) {
+            long s = System.nanoTime();
+            t._tick();
+            p.record(t.getClass(), s);
+        }
+        p.record(TickProfiler.Phase.TICK, start);
+    }
+
+    /**
+     * starts measuring the ticks of this engine and its worlds, if not done already.
+     * @return the profiler, containing the measurements
+     */
+    public synchronized TickProfiler enableProfiling() {
+        if (profiler == null) profiler = new TickProfiler();
+        return profiler;
+    }
+
+    /**
+     * stops measuring the ticks. The measurements done so far are discarded.
+     */
+    public synchronized void disableProfiling() {
+        profiler = null;
     }
 
     /**
@@ -149,20 +462,113 @@ public class Engine {
 
     /**
      * returns the amount of tps or Ticks per Second
-     * @return the tps the engine ran on the latest tick
+     * @return the average tps the engine ran on over the last {@link Engine#STATISTICS_SECONDS} seconds. 0 if there were no ticks
      */
     public double getTps() {
-        return 1000.0/latestMspt;
+        double mean = tickIntervals.mean();
+        return mean == 0? 0 : 1e9/mean;
     }
 
     /**
-     * returns the expected amount of milliseconds per tick
+     * returns the amount of milliseconds between the start of the last two ticks
      * @return the mspt of the last tick
      */
     public double getMspt() {
-        return latestMspt;
+        return latestIntervalNanos / 1e6;
+    }
+
+    /**
+     * returns the average amount of milliseconds it took to execute a tick.
+     * @return the average over the last {@link Engine#STATISTICS_SECONDS} seconds
+     */
+    public double getAverageMspt() {
+        return tickDurations.mean() / 1e6;
+    }
+
+    /**
+     * returns the amount of milliseconds, the given percentile of ticks took at most to execute
+     * @param percentile the percentile between 0 and 100
+     * @return the duration over the last {@link Engine#STATISTICS_SECONDS} seconds
+     */
+    public double getMsptPercentile(double percentile) {
+        return tickDurations.percentile(percentile) / 1e6;
+    }
+
+    /**
+     * @return the amount of milliseconds the longest tick took to execute, over the last {@link Engine#STATISTICS_SECONDS} seconds
+     */
+    public double getMaxMspt() {
+        return tickDurations.max() / 1e6;
+    }
+
+    /**
+     * @return the amount of milliseconds the shortest tick took to execute, over the last {@link Engine#STATISTICS_SECONDS} seconds
+     */
+    public double getMinMspt() {
+        return tickDurations.min() / 1e6;
+    }
+
+    /**
+     * returns the amount of ticks, which missed their deadline, because they took longer than 1000/tps milliseconds
+     * @return the amount of late ticks since the engine has been started or the counters were reset
+     */
+    public long getMissedDeadlines() {
+        return lateTicks;
+    }
+
+    /**
+     * returns the amount of ticks, which have been dropped to get back on schedule, see {@link OverrunPolicy}
+     * @return the amount of skipped ticks since the engine has been started or the counters were reset
+     */
+    public long getSkippedTicks() {
+        return skippedTicks;
+    }
+
+
+    /**
+     * The ways, an engine is able to execute its ticks.
+     */
+    public enum TickMode {
+
+        /**
+         * A new {@link TickEngine} thread is created every tick.
+         * The engine waits for it at most 1000/tps milliseconds. A tick taking longer keeps running, while the next one starts,
+         * so a tick is able to wait for the following ones, e.g. a {@link Dialog}. Use the other modes, if ticks must never overlap.
+         */
+        THREAD_PER_TICK,
+
+        /**
+         * The ticks are executed on the long-lived thread of the engine itself, paced by {@link System#nanoTime()} deadlines.
+         */
+        DEDICATED,
+
+        /**
+         * The ticks are handed to the {@link Engine#tickExecutor}, paced by {@link System#nanoTime()} deadlines.
+         */
+        EXECUTOR
     }
 
+    /**
+     * The ways, an engine is able to get back on schedule, after a tick took longer than it should have.
+     */
+    public enum OverrunPolicy {
+
+        /**
+         * The missed ticks are executed back to back, without waiting in between.
+         * At most {@link Engine#maxCatchUpTicks} ticks are caught up, the rest is dropped.
+         */
+        CATCH_UP,
+
+        /**
+         * The missed ticks are dropped. The next tick is executed at its regular time.
+         */
+        SKIP,
+
+        /**
+         * The next tick is executed right away and the schedule moves along with it. No ticks are dropped, the game just slows down.
+         */
+        STRETCH
+    }
 
     /**
      * Gets generated every tick.
@@ -0,0 +1,250 @@
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Records the inputs a world handles, tick by tick, into a compact binary log.
+ * Together with the seed of the world, the log can be fed back by an {@link InputReplayer} to re-run a session exactly.
+ *
+ * The log starts with a header of the magic number, the format version and the seed of the world.
+ * Afterwards a block is written for every tick with key or mouse events:
+ * the amount of ticks since the previous block, the kind of events and the events themselves.
+ * Ticks without any events are not written at all.
+ */
+public class InputRecorder {
+
+    /**
+     * marks the start of an input log
+     */
+    static final int MAGIC = 0x47464552;
+
+    /**
+     * the version of the log format
+     */
+    static final int VERSION = 1;
+
+    /**
+     * the kind of a block containing key events
+     */
+    static final int KEYS = 0;
+
+    /**
+     * the kind of a block containing mouse events
+     */
+    static final int MOUSE = 1;
+
+    /**
+     * the stream the log is written to
+     */
+    private final DataOutputStream out;
+
+    /**
+     * the world being recorded
+     */
+    private final World world;
+
+    /**
+     * the seed of the world, the recording starts with
+     */
+    private final long seed;
+
+    /**
+     * the tick of the world the recording started at. Set by the tick thread, when the recorder is attached
+     */
+    private long startTick;
+
+    /**
+     * if the recording has been stopped, maybe before it even got attached to the world
+     */
+    private volatile boolean stopped;
+
+    /**
+     * the tick, relative to the start, the last block has been written for
+     */
+    private long lastTick;
+
+    /**
+     * Creates a new recorder. Use {@link InputRecorder#start(World, OutputStream)} instead.
+     * @param world the world to record
+     * @param out the stream the log is written to
+     * @throws IOException when the header could not be written
+     */
+    private InputRecorder(World world, OutputStream out) throws IOException {
+        this.world = world;
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        seed = world.seed;
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(VERSION);
+        this.out.writeLong(seed);
+    }
+
+    /**
+     * attaches the recorder to the world. Runs on the tick thread at the start of a tick, so no tick draws random numbers or moves on meanwhile
+     */
+    private void attach() {
+        if (stopped) return;
+        InputRecorder recorder = world.recorder;
+        InputReplayer replayer = world.replayer;
+        if (recorder != null) recorder.stop();
+        if (replayer != null) replayer.stop();
+        startTick = world.ticks;
+        // the random numbers drawn before the recording started are not part of it, so start over like the replay will
+        world.setSeed(seed);
+        world.recorder = this;
+    }
+
+    /**
+     * starts recording the inputs of the world, beginning with its next tick.
+     * Stops any recording or replay attached to the world at that point.
+     * The recorder is attached by the tick thread at the start of the next tick, so it may be called from any thread.
+     * @param world the world to record
+     * @param out the stream the log is written to. Closed, once the recording is stopped
+     * @return the recorder
+     * @throws UncheckedIOException when the header could not be written
+     */
+    public static InputRecorder start(World world, OutputStream out) {
+        try {
+            InputRecorder r = new InputRecorder(world, out);
+            world.atNextTick(r::attach);
+            return r;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * records the key events handled during a tick
+     * @param tick the tick of the world
+     * @param events the handled events
+     */
+    void recordKeys(long tick, List<KeyEventInfo> events) {
+        if (events.isEmpty()) return;
+        try {
+            writeBlockHeader(tick, KEYS, events.size());
+            for (KeyEventInfo e : events) {
+                out.writeByte(e.type);
+                writeVarInt(out, e.e.getKeyCode());
+                out.writeChar(e.e.getKeyChar());
+                writeVarInt(out, e.e.getModifiersEx());
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * records the mouse events handled during a tick
+     * @param tick the tick of the world
+     * @param events the handled events
+     * @param dx the offset on the x axis, the events have been handled with
+     * @param dy the offset on the y axis, the events have been handled with
+     */
+    void recordMouse(long tick, List<MouseEventInfo> events, int dx, int dy) {
+        if (events.isEmpty()) return;
+        try {
+            writeBlockHeader(tick, MOUSE, events.size());
+            writeVarInt(out, dx);
+            writeVarInt(out, dy);
+            for (MouseEventInfo e : events) {
+                out.writeByte(e.type);
+                writeVarInt(out, e.e.getX());
+                writeVarInt(out, e.e.getY());
+                writeVarInt(out, e.e.getButton());
+                writeVarInt(out, e.e.getClickCount());
+                writeVarInt(out, e.e.getModifiersEx());
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * writes the start of a block
+     * @param tick the tick of the world
+     * @param kind the kind of the events
+     * @param size the amount of events
+     * @throws IOException when writing fails
+     */
+    private void writeBlockHeader(long tick, int kind, int size) throws IOException {
+        tick -= startTick;
+        writeVarLong(out, tick - lastTick);
+        lastTick = tick;
+        out.writeByte(kind);
+        writeVarInt(out, size);
+    }
+
+    /**
+     * stops the recording, writes the remaining data and closes the stream
+     * @throws UncheckedIOException when the stream could not be closed
+     */
+    public void stop() {
+        stopped = true;
+        if (world.recorder == this) world.recorder = null;
+        try {
+            out.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * writes a zigzag encoded variable length int, using a single byte for small values
+     * @param out the output to write to
+     * @param v the value
+     * @throws IOException when writing fails
+     */
+    static void writeVarInt(DataOutput out, int v) throws IOException {
+        writeVarLong(out, v);
+    }
+
+    /**
+     * writes a zigzag encoded variable length long, using a single byte for small values
+     * @param out the output to write to
+     * @param v the value
+     * @throws IOException when writing fails
+     */
+    static void writeVarLong(DataOutput out, long v) throws IOException {
+        v = (v << 1) ^ (v >> 63);
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    /**
+     * reads a value written by {@link InputRecorder#writeVarInt(DataOutput, int)}
+     * @param in the input to read from
+     * @return the value
+     * @throws IOException when reading fails
+     */
+    static int readVarInt(DataInput in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    /**
+     * reads a value written by {@link InputRecorder#writeVarLong(DataOutput, long)}
+     * @param in the input to read from
+     * @return the value
+     * @throws IOException when reading fails
+     */
+    static long readVarLong(DataInput in) throws IOException {
+        long v = 0;
+        int shift = 0, b;
+        do {
+            b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
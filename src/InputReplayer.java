@@ -0,0 +1,209 @@
+import java.awt.Component;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Feeds the inputs recorded by an {@link InputRecorder} back into a world, at the same ticks they were recorded at.
+ * The world gets the recorded seed, so a session runs exactly the same way again, as long as the world only uses {@link World#random}.
+ * While replaying, the live inputs of the world are ignored. Combine it with {@link Engine#setFastForward(boolean)} or a {@link BatchRunner} to replay unthrottled.
+ */
+public class InputReplayer {
+
+    /**
+     * the stream the log is read from
+     */
+    private final DataInputStream in;
+
+    /**
+     * the world being replayed
+     */
+    private final World world;
+
+    /**
+     * the component the replayed events come from. The ui of the world, a placeholder for headless worlds, which have none
+     */
+    private final Component source;
+
+    /**
+     * the recorded seed of the world
+     */
+    private final long seed;
+
+    /**
+     * the tick of the world the replay started at. Set by the tick thread, when the replayer is attached
+     */
+    private long startTick;
+
+    /**
+     * the tick, relative to the start, of the next block. -1 when the log is over
+     */
+    private long nextTick;
+
+    /**
+     * the kind of the next block
+     */
+    private int nextKind;
+
+    /**
+     * Creates a new replayer. Use {@link InputReplayer#start(World, InputStream)} instead.
+     * @param world the world to feed the inputs to
+     * @param in the stream the log is read from
+     * @throws IOException when the header could not be read or is not a valid input log
+     */
+    private InputReplayer(World world, InputStream in) throws IOException {
+        this.world = world;
+        source = world.ui != null? world.ui : new Component() {};
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        if (this.in.readInt() != InputRecorder.MAGIC) throw new IOException("Not an input log");
+        int version = this.in.readUnsignedByte();
+        if (version != InputRecorder.VERSION) throw new IOException("Unsupported input log version " + version);
+        seed = this.in.readLong();
+        readBlockHeader();
+    }
+
+    /**
+     * attaches the replayer to the world. Runs on the tick thread at the start of a tick, so no tick draws random numbers or moves on meanwhile
+     */
+    private void attach() {
+        InputRecorder recorder = world.recorder;
+        InputReplayer replayer = world.replayer;
+        if (recorder != null) recorder.stop();
+        if (replayer != null) replayer.stop();
+        world.setSeed(seed);
+        if (isFinished()) return;
+        startTick = world.ticks;
+        world.replayer = this;
+    }
+
+    /**
+     * starts feeding the recorded inputs to the world, beginning with its next tick.
+     * Resets the random number generator of the world to the recorded seed and stops any recording or replay attached to the world at that point.
+     * The replayer is attached by the tick thread at the start of the next tick, so it may be called from any thread.
+     * @param world the world to replay the inputs in
+     * @param in the stream the log is read from. Closed, once the replay is over
+     * @return the replayer
+     * @throws UncheckedIOException when the log could not be read
+     */
+    public static InputReplayer start(World world, InputStream in) {
+        try {
+            InputReplayer r = new InputReplayer(world, in);
+            world.atNextTick(r::attach);
+            return r;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return if all recorded inputs have been fed to the world
+     */
+    public boolean isFinished() {
+        return nextTick < 0;
+    }
+
+    /**
+     * returns the key events recorded for the given tick
+     * @param tick the tick of the world
+     * @return the events, empty if there were none
+     */
+    List<KeyEventInfo> keys(long tick) {
+        if (nextTick != tick - startTick || nextKind != InputRecorder.KEYS) return Collections.emptyList();
+        try {
+            int n = InputRecorder.readVarInt(in);
+            List<KeyEventInfo> ret = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                int type = in.readUnsignedByte();
+                int code = InputRecorder.readVarInt(in);
+                char c = in.readChar();
+                int modifiers = InputRecorder.readVarInt(in);
+                int id = type == 0? KeyEvent.KEY_TYPED : type == 1? KeyEvent.KEY_PRESSED : KeyEvent.KEY_RELEASED;
+                ret.add(new KeyEventInfo(new KeyEvent(source, id, 0, modifiers, code, c), type));
+            }
+            readBlockHeader();
+            return ret;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * issues the mouse events recorded for the given tick in the world
+     * @param tick the tick of the world
+     */
+    void handleMouse(long tick) {
+        if (nextTick != tick - startTick || nextKind != InputRecorder.MOUSE) return;
+        try {
+            int n = InputRecorder.readVarInt(in);
+            int dx = InputRecorder.readVarInt(in), dy = InputRecorder.readVarInt(in);
+            List<MouseEventInfo> events = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                int type = in.readUnsignedByte();
+                int x = InputRecorder.readVarInt(in), y = InputRecorder.readVarInt(in);
+                int button = InputRecorder.readVarInt(in);
+                int clicks = InputRecorder.readVarInt(in);
+                int modifiers = InputRecorder.readVarInt(in);
+                events.add(new MouseEventInfo(new MouseEvent(source, toAwtId(type), 0, modifiers, x, y, clicks, false, button), type));
+            }
+            readBlockHeader();
+            InputsManager.handleMouse(world, events, dx, dy);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * converts the type of a {@link MouseEventInfo} into the id of the awt event
+     * @param type the type of the info
+     * @return the id of the {@link MouseEvent}
+     */
+    private static int toAwtId(int type) {
+        switch (type) {
+            case MouseEventInfo.MOUSE_PRESSED: return MouseEvent.MOUSE_PRESSED;
+            case MouseEventInfo.MOUSE_CLICKED: return MouseEvent.MOUSE_CLICKED;
+            case MouseEventInfo.MOUSE_RELEASED: return MouseEvent.MOUSE_RELEASED;
+            case MouseEventInfo.MOUSE_ENTERED: return MouseEvent.MOUSE_ENTERED;
+            default: return MouseEvent.MOUSE_EXITED;
+        }
+    }
+
+    /**
+     * reads the tick and kind of the next block. Ends the replay, when the log is over
+     * @throws IOException when reading fails
+     */
+    private void readBlockHeader() throws IOException {
+        try {
+            nextTick += InputRecorder.readVarLong(in);
+            nextKind = in.readUnsignedByte();
+        }
+        catch (EOFException e) {
+            stop();
+        }
+    }
+
+    /**
+     * stops the replay and closes the stream. The world handles its live inputs again afterwards.
+     * @throws UncheckedIOException when the stream could not be closed
+     */
+    public void stop() {
+        nextTick = -1;
+        if (world.replayer == this) world.replayer = null;
+        try {
+            in.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,5 +1,8 @@
 import java.awt.*;
 import java.awt.event.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Queue;
@@ -124,23 +127,43 @@ public class InputsManager implements MouseListener, KeyListener, WindowListener
      * handles all key events and issues the events in the sub classes.
      */
     public final void handleKeys() {
+        handleKeys(frame.world, drainKeys());
+    }
+
+    /**
+     * removes all queued key events from the queue
+     * @return the events, in the order they occurred
+     */
+    public final List<KeyEventInfo> drainKeys() {
+        if (keys.isEmpty()) return Collections.emptyList();
+        List<KeyEventInfo> ret = new ArrayList<>();
         KeyEventInfo e;
-        while ((e = keys.poll()) != null)
+        while ((e = keys.poll()) != null) ret.add(e);
+        return ret;
+    }
+
+    /**
+     * issues the events of the given keys in the world and its textfields
+     * @param world the world to issue the events in
+     * @param events the key events to handle
+     */
+    public static void handleKeys(World world, Collection<KeyEventInfo> events) {
+        for (KeyEventInfo e : events)
         {
             switch (e.type) {
                 case 0:
-                    frame.world.keyTyped(e.e.getKeyChar());
-                    frame.world.keyTyped((int)e.e.getKeyChar());
+                    world.keyTyped(e.e.getKeyChar());
+                    world.keyTyped((int)e.e.getKeyChar());
                     break;
                 case 1:
-                    frame.world.keyPressed(e.e.getKeyChar());
-                    frame.world.keyPressed((int)e.e.getKeyChar());
+                    world.keyPressed(e.e.getKeyChar());
+                    world.keyPressed((int)e.e.getKeyChar());
                     KeyEventInfo finalE = e;
-                    frame.world.objectsOf(Textfield.class).stream().filter(tf -> tf.isSelected).forEach(tf -> tf.keyTyped(finalE.e.getKeyChar()));
+                    world.objectsOf(Textfield.class).stream().filter(tf -> tf.isSelected).forEach(tf -> tf.keyTyped(finalE.e.getKeyChar()));
                     break;
                 case 2:
-                    frame.world.keyReleased(e.e.getKeyChar());
-                    frame.world.keyReleased((int)e.e.getKeyChar());
+                    world.keyReleased(e.e.getKeyChar());
+                    world.keyReleased((int)e.e.getKeyChar());
                     break;
             }
         }
@@ -198,31 +221,57 @@ public class InputsManager implements MouseListener, KeyListener, WindowListener
      * Issues the events of the world as well as the clicked objects.
      */
     public void handleMouse() {
+        handleMouse(frame.world, drainClicks(), frame.bardim[0], frame.bardim[1]);
+    }
+
+    /**
+     * removes all queued mouse events from the queue
+     * @return the events, in the order they occurred
+     */
+    public final List<MouseEventInfo> drainClicks() {
+        if (clicks.isEmpty()) return Collections.emptyList();
+        List<MouseEventInfo> ret = new ArrayList<>();
         MouseEventInfo e;
+        while ((e = clicks.poll()) != null) ret.add(e);
+        return ret;
+    }
+
+    /**
+     * Issues the events of the world as well as the clicked objects.
+     * The world gets the topmost object, the objects get their events from top to bottom, see {@link World#objectsUnder(int, int)}
+     * @param world the world to issue the events in
+     * @param events the mouse events to handle
+     * @param dx the offset on the x axis, between the point of the events and the frame coordinates of the objects
+     * @param dy the offset on the y axis, between the point of the events and the frame coordinates of the objects
+     */
+    public static void handleMouse(World world, Collection<MouseEventInfo> events, int dx, int dy) {
         WorldObj o;
         List<WorldObj> objs;
-        while ((e = clicks.poll()) != null) {
+        for (MouseEventInfo e : events) {
             Point p = e.e.getPoint();
-            objs = frame.world.objects.stream().filter(ob -> ob.isAt(p.x-frame.bardim[0], p.y-frame.bardim[1], true)).collect(Collectors.toList());
+            objs = world.objectsUnder(p.x-dx, p.y-dy);
             o = objs.isEmpty()? null : objs.get(0);
             MouseEventInfo finalE = e;
             switch (e.type) {
                 case MouseEventInfo.MOUSE_PRESSED:
-                    frame.world.mousePressed(e.e, o);
+                    world.mousePressed(e.e, o);
                     break;
                 case MouseEventInfo.MOUSE_CLICKED:
-                    frame.world.mouseClicked(e.e, o);
+                    world.mouseClicked(e.e, o);
                     break;
                 case MouseEventInfo.MOUSE_RELEASED:
-                    frame.world.mouseReleased(e.e, o);
+                    world.mouseReleased(e.e, o);
                     break;
                 case MouseEventInfo.MOUSE_ENTERED:
-                    frame.world.mouseEntered(e.e, o);
+                    world.mouseEntered(e.e, o);
                     break;
                 case MouseEventInfo.MOUSE_EXITED:
-                    frame.world.mouseExited(e.e, o);
+                    world.mouseExited(e.e, o);
             }
-            objs.forEach(ob -> ob._mouseEvent(finalE));
+            objs.forEach(ob -> {
+                ob.wake();
+                ob._mouseEvent(finalE);
+            });
         }
     }
     /**
@@ -19,12 +19,6 @@ public class Label extends Button{
         setText(text);
     }
 
-    /**
-     * does nothing
-     */
-    @Override
-    public void tick() {}
-
     /**
      * does nothing when clicked
      * @param e the click event information
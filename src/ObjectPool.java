@@ -0,0 +1,169 @@
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Recycles objects, which are spawned and removed often, e.g. projectiles or effects, instead of creating new ones every time.
+ * Objects taken from a pool by {@link World#addObject(ObjectPool, int, int)} return to it by themselves, once they are removed from their world.
+ * Objects removed during a tick only return at its end, when they have left the indexes of the world.
+ * Do not keep references to them afterwards, as they will be handed out again.
+ * A recycled object counts as a new object for collisions, so it gets {@link WorldObj#onCollisionEnter(WorldObj)} again.
+ *
+ * Before an object is handed out again, {@link WorldObj#recycle()} and the reset of the pool are called, to bring it back into its initial state.
+ * @param <T> the class of the objects
+ */
+public class ObjectPool<T extends WorldObj> {
+
+    /**
+     * creates new objects, when the pool is empty
+     */
+    private final Supplier<T> factory;
+
+    /**
+     * resets an object, before it is handed out again. null if none
+     */
+    private final Consumer<? super T> reset;
+
+    /**
+     * the maximum amount of idle objects kept. Objects released beyond that are left to the garbage collector
+     */
+    public final int capacity;
+
+    /**
+     * the idle objects
+     */
+    private final ArrayDeque<T> idle = new ArrayDeque<>();
+
+    /**
+     * the amount of objects handed out from the pool and the amount of objects which had to be created
+     */
+    private long hits, misses;
+
+    /**
+     * the amount of objects released, but dropped as the pool was full
+     */
+    private long dropped;
+
+    /**
+     * Creates a new pool, keeping up to 1024 idle objects
+     * @param factory creates new objects, when the pool is empty
+     */
+    public ObjectPool(Supplier<T> factory) {
+        this(factory, null, 1024);
+    }
+
+    /**
+     * Creates a new pool
+     * @param factory creates new objects, when the pool is empty
+     * @param reset resets an object, before it is handed out again. null if {@link WorldObj#recycle()} does all the work
+     * @param capacity the maximum amount of idle objects kept
+     * @throws IllegalArgumentException when the factory is null or the capacity is negative
+     */
+    public ObjectPool(Supplier<T> factory, Consumer<? super T> reset, int capacity) {
+        if (factory == null) throw new IllegalArgumentException("Factory must not be null");
+        if (capacity < 0) throw new IllegalArgumentException("Capacity must not be negative");
+        this.factory = factory;
+        this.reset = reset;
+        this.capacity = capacity;
+    }
+
+    /**
+     * takes an idle object out of the pool, or creates a new one, if there is none.
+     * Usually {@link World#addObject(ObjectPool, int, int)} is used instead.
+     * @return the object, belonging to this pool
+     */
+    public T acquire() {
+        T o;
+        synchronized (this) {
+            o = idle.poll();
+            if (o == null) misses++;
+            else hits++;
+        }
+        if (o == null) {
+            o = factory.get();
+        }
+        else {
+            o.idle = false;
+            o.resetState();
+            o.recycle();
+            if (reset != null) reset.accept(o);
+        }
+        o.pool = this;
+        return o;
+    }
+
+    /**
+     * gives an object back to the pool. Called by the store of the world, once a pooled object has left it.
+     * Objects, which are still in a world or its store, idle already or belong to another pool, are ignored.
+     * @param o the object
+     */
+    @SuppressWarnings("unchecked") // only objects created by this pool belong to it
+    void release(WorldObj o) {
+        if (o.pool != this || o.world != null || o.store != null) return;
+        synchronized (this) {
+            if (o.idle) return;
+            if (idle.size() >= capacity) {
+                dropped++;
+                o.pool = null;
+                return;
+            }
+            o.idle = true;
+            idle.push((T) o);
+        }
+    }
+
+    /**
+     * @return the amount of objects handed out, which have been recycled
+     */
+    public synchronized long getHits() {return hits;}
+
+    /**
+     * @return the amount of objects handed out, which had to be created
+     */
+    public synchronized long getMisses() {return misses;}
+
+    /**
+     * @return the amount of released objects, which were left to the garbage collector, as the pool was full
+     */
+    public synchronized long getDropped() {return dropped;}
+
+    /**
+     * @return the share of objects handed out, which have been recycled, between 0 and 1
+     */
+    public synchronized double getHitRate() {
+        return hits + misses == 0? 0 : (double) hits / (hits + misses);
+    }
+
+    /**
+     * @return the amount of idle objects in the pool
+     */
+    public synchronized int size() {return idle.size();}
+
+    /**
+     * creates objects in advance, so the first spawns do not have to
+     * @param amount the amount of idle objects the pool should have at least
+     */
+    public void prefill(int amount) {
+        amount = Math.min(amount, capacity);
+        while (size() < amount) {
+            T o = factory.get();
+            o.pool = this;
+            release(o);
+        }
+    }
+
+    /**
+     * resets the statistics
+     */
+    public synchronized void resetStatistics() {
+        hits = misses = dropped = 0;
+    }
+
+    /**
+     * @return the amount of idle objects and the statistics of the pool
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("%d idle, %d hits, %d misses (%.1f%% hit rate), %d dropped", idle.size(), hits, misses, getHitRate()*100, dropped);
+    }
+}
@@ -0,0 +1,549 @@
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Stores the objects of a world.
+ * Every object knows its index in the store, so it is removed in constant time by moving the last object into its place.
+ * Therefore the order of the objects changes, when objects get removed.
+ *
+ * While the world is ticking, adding and removing objects is only recorded and applied at the end of the tick, all at once.
+ * So the objects stay the same during a tick, no matter which objects spawn or destroy others.
+ * Outside of a tick, changes are applied right away.
+ *
+ * Optionally the objects are sorted into a {@link SpatialHash} by their position as well, see {@link World#setSpatialIndex(int)}
+ *
+ * Objects are also kept in a bucket per class, so looking up the objects of a class or interface
+ * only visits the objects of the matching classes, instead of all objects.
+ *
+ * Iterators see the objects as they were, when the iterator has been created, like the ones of a {@link java.util.concurrent.CopyOnWriteArrayList}.
+ * So objects can be added and removed while iterating, even from other threads. The objects are only copied,
+ * when they change for the first time after an iterator has been created.
+ */
+public class ObjectStore extends AbstractList<WorldObj> {
+
+    /**
+     * the world the objects are in
+     */
+    private final World world;
+
+    /**
+     * the objects, from 0 to size
+     */
+    private WorldObj[] objs = new WorldObj[16];
+
+    /**
+     * the amount of objects
+     */
+    private int size;
+
+    /**
+     * if an iterator may still use {@link ObjectStore#objs}, so it has to be copied before the next change
+     */
+    private boolean shared;
+
+    /**
+     * sorts the objects into cells by their position. null if not enabled
+     */
+    private volatile SpatialHash grid;
+
+    /**
+     * finds touching objects. null until the first collision check
+     */
+    private volatile Broadphase broadphase;
+
+    /**
+     * the pathfinders of the world, one per blocking class. See {@link Pathfinder}
+     */
+    private volatile Pathfinder[] pathfinders = new Pathfinder[0];
+
+    /**
+     * the objects of each class. Subclasses have their own bucket
+     */
+    private final Map<Class<?>, Bucket> buckets = new HashMap<>();
+
+    /**
+     * the buckets of all classes, which are instances of the looked up class or interface.
+     * Cleared, whenever a bucket is added
+     */
+    private final Map<Class<?>, List<Bucket>> matching = new HashMap<>();
+
+    /**
+     * if the world is ticking right now and changes have to wait until the end of the tick
+     */
+    private boolean deferring;
+
+    /**
+     * the objects added or removed during the current tick, in the order it happened.
+     * Swapped with the applied ones at the end of the tick, so the changes are applied without holding the lock
+     */
+    private List<WorldObj> pending = new ArrayList<>(), applied = new ArrayList<>();
+
+    /**
+     * marks the entries of {@link ObjectStore#pending} and {@link ObjectStore#applied}, which are removals
+     */
+    private BitSet pendingRemovals = new BitSet(), appliedRemovals = new BitSet();
+
+    /**
+     * Creates a new, empty store
+     * @param world the world the objects are in
+     */
+    ObjectStore(World world) {
+        this.world = world;
+    }
+
+    /**
+     * @return the amount of objects
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * returns the object at the given index
+     * @param index the index of the object
+     * @return the object
+     * @throws IndexOutOfBoundsException when the index is negative or not less than the size
+     */
+    @Override
+    public WorldObj get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        return objs[index];
+    }
+
+    /**
+     * checks in constant time, if the object is in the store
+     * @param o the object
+     * @return if the object is in the store. Objects added during the current tick are not in the store before its end
+     */
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof WorldObj && ((WorldObj) o).store == this;
+    }
+
+    /**
+     * adds an object. Objects already in the store are not added twice
+     * @param o the object to add
+     * @return true, as the object is either added or going to be added at the end of the tick
+     * @throws NullPointerException when the object is null
+     */
+    @Override
+    public boolean add(WorldObj o) {
+        if (o == null) throw new NullPointerException("Object must not be null");
+        moveIn(o);
+        return true;
+    }
+
+    /**
+     * removes an object in constant time, moving the last object into its place
+     * @param o the object to remove
+     * @return if the object is in the store
+     */
+    @Override
+    public synchronized boolean remove(Object o) {
+        if (!(o instanceof WorldObj)) return false;
+        WorldObj obj = (WorldObj) o;
+        if (deferring) {
+            pendingRemovals.set(pending.size());
+            pending.add(obj);
+            return obj.store == this;
+        }
+        return delete(obj);
+    }
+
+    /**
+     * removes all given objects
+     * @param c the objects to remove
+     * @return if any of the objects has been in the store
+     */
+    @Override
+    public synchronized boolean removeAll(Collection<?> c) {
+        if (c == this) {
+            boolean changed = size > 0;
+            clear();
+            return changed;
+        }
+        boolean changed = false;
+        for (Object o : c) {
+            changed |= remove(o);
+        }
+        return changed;
+    }
+
+    /**
+     * removes all objects
+     */
+    @Override
+    public synchronized void clear() {
+        if (deferring) {
+            for (int i = 0; i < size; i++) {
+                pendingRemovals.set(pending.size());
+                pending.add(objs[i]);
+            }
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            if (broadphase != null) broadphase.remove(objs[i]);
+            for (Pathfinder p : pathfinders) p.remove(objs[i]);
+            objs[i].store = null;
+            objs[i].storeIndex = -1;
+            release(objs[i]);
+        }
+        if (shared) {
+            objs = new WorldObj[objs.length];
+            shared = false;
+        }
+        else {
+            Arrays.fill(objs, 0, size, null);
+        }
+        size = 0;
+        buckets.values().forEach(Bucket::clear);
+        if (grid != null) grid.clear();
+    }
+
+    /**
+     * @return an iterator over a snapshot of the objects. See {@link ObjectStore}
+     */
+    @Override
+    public Iterator<WorldObj> iterator() {
+        WorldObj[] objs;
+        int size;
+        synchronized (this) {
+            objs = this.objs;
+            size = this.size;
+            shared = true;
+        }
+        return new Iterator<WorldObj>() {
+            private int i;
+
+            @Override
+            public boolean hasNext() {
+                return i < size;
+            }
+
+            @Override
+            public WorldObj next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return objs[i++];
+            }
+        };
+    }
+
+    /**
+     * returns the broadphase of the objects, creating it on first use
+     * @return the broadphase
+     */
+    Broadphase getBroadphase() {
+        Broadphase b = broadphase;
+        if (b != null) return b;
+        synchronized (this) {
+            if (broadphase == null) broadphase = new Broadphase(world, Arrays.asList(objs).subList(0, size));
+            return broadphase;
+        }
+    }
+
+    /**
+     * returns the pathfinder for the given blocking class, creating it on first use
+     * @param cls the class or interface of the blocking objects. Any if null
+     * @return the pathfinder
+     */
+    synchronized Pathfinder getPathfinder(Class<?> cls) {
+        for (Pathfinder p : pathfinders) {
+            if (p.getBlockingClass() == cls) return p;
+        }
+        Pathfinder p = new Pathfinder(world, cls, Arrays.asList(objs).subList(0, size));
+        Pathfinder[] ps = Arrays.copyOf(pathfinders, pathfinders.length + 1);
+        ps[ps.length - 1] = p;
+        pathfinders = ps;
+        return p;
+    }
+
+    /**
+     * enables or disables the spatial index
+     * @param cellSize the amount of fields along each side of a cell. 0 to disable the index
+     * @throws IllegalArgumentException when the cell size is negative
+     */
+    synchronized void setSpatialIndex(int cellSize) {
+        if (cellSize < 0) throw new IllegalArgumentException("Cell size must not be negative");
+        if (grid != null) grid.clear();
+        grid = null;
+        if (cellSize == 0) return;
+        SpatialHash grid = new SpatialHash(cellSize);
+        for (int i = 0; i < size; i++) grid.insert(objs[i]);
+        this.grid = grid;
+    }
+
+    /**
+     * @return the spatial index. null if not enabled
+     */
+    SpatialHash getSpatialIndex() {
+        return grid;
+    }
+
+    /**
+     * updates the indexes, after the object has been moved or rotated.
+     * Objects ticked in parallel are only marked, so the workers do not share the indexes, see {@link World#tickObjects(TickProfiler)}
+     * @param o the object
+     */
+    void moved(WorldObj o) {
+        if (o.inParallelTick) {
+            o.movedInParallelTick = true;
+            return;
+        }
+        SpatialHash grid = this.grid;
+        if (grid != null) grid.moved(o);
+        Broadphase broadphase = this.broadphase;
+        if (broadphase != null) broadphase.moved(o);
+        for (Pathfinder p : pathfinders) p.moved(o);
+    }
+
+    /**
+     * returns all objects, which are instance of the given class or interface.
+     * Only the objects of the matching classes are visited
+     * @param cls the class or interface
+     * @return the objects, grouped by their class
+     */
+    @SuppressWarnings("unchecked") // the buckets only match subclasses of cls
+    synchronized <T> List<T> ofType(Class<T> cls) {
+        List<Bucket> match = matching(cls);
+        int n = 0;
+        for (Bucket b : match) n += b.size;
+        List<T> ret = new ArrayList<>(n);
+        for (Bucket b : match) {
+            for (int i = 0; i < b.size; i++) ret.add((T) b.objs[i]);
+        }
+        return ret;
+    }
+
+    /**
+     * checks if there is any object of the given class or interface
+     * @param cls the class or interface
+     * @return if there is at least one
+     */
+    synchronized boolean containsType(Class<?> cls) {
+        for (Bucket b : matching(cls)) {
+            if (b.size > 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * returns the buckets of the classes, which are instances of the given class or interface
+     * @param cls the class or interface
+     * @return the buckets
+     */
+    private List<Bucket> matching(Class<?> cls) {
+        List<Bucket> match = matching.get(cls);
+        if (match == null) {
+            match = new ArrayList<>();
+            for (Bucket b : buckets.values()) {
+                if (cls.isAssignableFrom(b.cls)) match.add(b);
+            }
+            matching.put(cls, match);
+        }
+        return match;
+    }
+
+    /**
+     * starts a tick. Changes are recorded until the end of the tick
+     */
+    synchronized void beginTick() {
+        deferring = true;
+    }
+
+    /**
+     * ends a tick and applies all changes recorded during it
+     */
+    void endTick() {
+        List<WorldObj> changes;
+        BitSet removals;
+        synchronized (this) {
+            deferring = false;
+            changes = pending;
+            removals = pendingRemovals;
+            pending = applied;
+            pendingRemovals = appliedRemovals;
+            applied = changes;
+            appliedRemovals = removals;
+        }
+        // only the tick thread ends ticks, so the applied changes are not touched by anyone else
+        for (int i = 0; i < changes.size(); i++) {
+            WorldObj o = changes.get(i);
+            if (removals.get(i)) {
+                remove(o);
+                release(o);
+            }
+            // skip objects, which moved on to another world during the tick
+            else if (o.world == world) moveIn(o);
+        }
+        changes.clear();
+        removals.clear();
+    }
+
+    /**
+     * gives a removed object back to its pool, once it has left the store.
+     * During a tick, that is only at its end, as the object is still found by the indexes until then
+     * @param o the removed object
+     */
+    synchronized void recycle(WorldObj o) {
+        if (!deferring) release(o);
+    }
+
+    /**
+     * gives the object back to its pool, if it belongs to one and is neither in a world nor in the store anymore
+     * @param o the object
+     */
+    private static void release(WorldObj o) {
+        if (o.pool != null && o.world == null && o.store == null) o.pool.release(o);
+    }
+
+    /**
+     * adds the object, or records it to be added at the end of the tick.
+     * An object can only be in one store, so it leaves the store it is in before, without holding the lock of this one,
+     * as two worlds handing objects to each other would otherwise wait for each other's lock
+     * @param o the object to add
+     */
+    private void moveIn(WorldObj o) {
+        while (true) {
+            ObjectStore old;
+            synchronized (this) {
+                if (deferring) {
+                    pending.add(o);
+                    return;
+                }
+                old = o.store;
+                if (old == null || old == this) {
+                    insert(o);
+                    return;
+                }
+            }
+            old.detach(o);
+        }
+    }
+
+    /**
+     * adds the object at the end, if it is not in the store yet
+     * @param o the object to add, which is in no other store
+     */
+    private void insert(WorldObj o) {
+        if (o.store == this) return;
+        if (size == objs.length) objs = Arrays.copyOf(objs, size * 2);
+        else if (shared) objs = objs.clone();
+        shared = false;
+        o.store = this;
+        o.storeIndex = size;
+        objs[size++] = o;
+        Bucket b = buckets.get(o.getClass());
+        if (b == null) {
+            b = new Bucket(o.getClass());
+            buckets.put(o.getClass(), b);
+            matching.clear();
+        }
+        b.add(o);
+        if (grid != null) grid.insert(o);
+        if (broadphase != null) broadphase.add(o);
+        for (Pathfinder p : pathfinders) p.add(o);
+    }
+
+    /**
+     * removes the object right away, even during a tick
+     * @param o the object to remove
+     */
+    private synchronized void detach(WorldObj o) {
+        delete(o);
+    }
+
+    /**
+     * removes the object, moving the last object into its place
+     * @param o the object to remove
+     * @return if the object has been in the store
+     */
+    private boolean delete(WorldObj o) {
+        if (o.store != this) return false;
+        if (shared) {
+            objs = objs.clone();
+            shared = false;
+        }
+        int i = o.storeIndex;
+        WorldObj last = objs[--size];
+        objs[i] = last;
+        last.storeIndex = i;
+        objs[size] = null;
+        o.store = null;
+        o.storeIndex = -1;
+        buckets.get(o.getClass()).remove(o);
+        if (grid != null) grid.remove(o);
+        if (broadphase != null) broadphase.remove(o);
+        for (Pathfinder p : pathfinders) p.remove(o);
+        return true;
+    }
+
+    /**
+     * The objects of a single class, removed in constant time like the store itself
+     */
+    private static class Bucket {
+
+        /**
+         * the class of the objects
+         */
+        final Class<?> cls;
+
+        /**
+         * the objects, from 0 to size
+         */
+        WorldObj[] objs = new WorldObj[8];
+
+        /**
+         * the amount of objects
+         */
+        int size;
+
+        /**
+         * Creates a new, empty bucket
+         * @param cls the class of the objects
+         */
+        Bucket(Class<?> cls) {
+            this.cls = cls;
+        }
+
+        /**
+         * adds the object at the end
+         * @param o the object
+         */
+        void add(WorldObj o) {
+            if (size == objs.length) objs = Arrays.copyOf(objs, size * 2);
+            o.classIndex = size;
+            objs[size++] = o;
+        }
+
+        /**
+         * removes the object, moving the last object into its place
+         * @param o the object
+         */
+        void remove(WorldObj o) {
+            int i = o.classIndex;
+            WorldObj last = objs[--size];
+            objs[i] = last;
+            last.classIndex = i;
+            objs[size] = null;
+            o.classIndex = -1;
+        }
+
+        /**
+         * removes all objects
+         */
+        void clear() {
+            for (int i = 0; i < size; i++) objs[i].classIndex = -1;
+            Arrays.fill(objs, 0, size, null);
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,504 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the shortest paths between the fields of a world, around the fields taken by objects of a blocking class (A*).
+ * See {@link World#pathfinder(Class)}
+ *
+ * The pathfinder counts the blocking objects on each field and keeps the counts up to date, as objects are added, moved and removed.
+ * Objects moved by writing their fields directly are noticed by the first query of the next tick.
+ *
+ * Each search runs backwards, from the goal towards the start, and is kept until a field it has reached, or one next to them, becomes blocked or free.
+ * Every field the search has finished knows its shortest distance to the goal,
+ * so asking for the same goal again, even from another start, only continues the search where it stopped.
+ */
+public class Pathfinder {
+
+    /**
+     * the cost of a straight and a diagonal step
+     */
+    static final int STRAIGHT = 10, DIAGONAL = 14;
+
+    /**
+     * the state of a field in a search
+     */
+    private static final byte NEW = 0, OPEN = 1, CLOSED = 2;
+
+    /**
+     * the steps to the neighbouring fields, the straight ones first
+     */
+    private static final int[] DX = {1, 0, -1, 0, 1, 1, -1, -1}, DY = {0, 1, 0, -1, 1, -1, 1, -1};
+
+    /**
+     * the world the objects are in
+     */
+    private final World world;
+
+    /**
+     * the class or interface of the blocking objects. Any if null
+     */
+    private final Class<?> cls;
+
+    /**
+     * the size of the world, the counts have been made for
+     */
+    private int width, height;
+
+    /**
+     * the amount of blocking objects on each field, row by row
+     */
+    private int[] blockers = new int[0];
+
+    /**
+     * the field each blocking object is counted on. -1 for objects outside of the world
+     */
+    private final Map<WorldObj, Integer> fields = new IdentityHashMap<>();
+
+    /**
+     * the tick of the world, all objects have been checked for direct changes of their fields the last time
+     */
+    private long checkedTick = -1;
+
+    /**
+     * the maximum amount of searches kept
+     */
+    private int cacheSize = 8;
+
+    /**
+     * the searches of the recently asked goals, the least recently used first
+     */
+    private final LinkedHashMap<Integer, Search> searches = new LinkedHashMap<Integer, Search>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Search> eldest) {
+            return size() > cacheSize;
+        }
+    };
+
+    /**
+     * Creates a new pathfinder, counting the blocking objects of the world
+     * @param world the world
+     * @param cls the class or interface of the blocking objects. Any if null
+     * @param objs the objects of the world
+     */
+    Pathfinder(World world, Class<?> cls, Iterable<WorldObj> objs) {
+        this.world = world;
+        this.cls = cls;
+        resize();
+        for (WorldObj o : objs) add(o);
+    }
+
+    /**
+     * @return the class or interface of the blocking objects. null if any object blocks
+     */
+    public Class<?> getBlockingClass() {
+        return cls;
+    }
+
+    /**
+     * sets the amount of goals, whose searches are kept. Each search takes about 5 bytes per field of the world
+     * @param cacheSize the maximum amount of searches kept
+     * @throws IllegalArgumentException when the size is less than 1
+     */
+    public synchronized void setCacheSize(int cacheSize) {
+        if (cacheSize < 1) throw new IllegalArgumentException("Cache size must be at least 1");
+        this.cacheSize = cacheSize;
+        while (searches.size() > cacheSize) searches.remove(searches.keySet().iterator().next());
+    }
+
+    /**
+     * counts the object, if it is blocking
+     * @param o the object
+     */
+    synchronized void add(WorldObj o) {
+        if (!blocks(o)) return;
+        int f = field(o);
+        fields.put(o, f);
+        count(f, 1);
+    }
+
+    /**
+     * stops counting the object
+     * @param o the object
+     */
+    synchronized void remove(WorldObj o) {
+        Integer f = fields.remove(o);
+        if (f != null) count(f, -1);
+    }
+
+    /**
+     * moves the count of the object to its current field
+     * @param o the object
+     */
+    void moved(WorldObj o) {
+        if (!blocks(o)) return;
+        synchronized (this) {
+            Integer f = fields.get(o);
+            if (f == null) return;
+            int n = field(o);
+            if (n == f) return;
+            fields.put(o, n);
+            count(f, -1);
+            count(n, 1);
+        }
+    }
+
+    /**
+     * @param o the object
+     * @return if the object is of the blocking class
+     */
+    private boolean blocks(WorldObj o) {
+        return cls == null || cls.isInstance(o);
+    }
+
+    /**
+     * @param o the object
+     * @return the index of the field of the object. -1 if it is outside of the world
+     */
+    private int field(WorldObj o) {
+        int x = o.x, y = o.y;
+        return x < 0 || y < 0 || x >= width || y >= height? -1 : y * width + x;
+    }
+
+    /**
+     * changes the amount of blocking objects on a field. Drops the searches affected, when the field gets blocked or free, see {@link Search#touches(int)}
+     * @param f the index of the field. Ignored if -1
+     * @param amount the amount to add
+     */
+    private void count(int f, int amount) {
+        if (f < 0) return;
+        boolean blocked = blockers[f] > 0;
+        blockers[f] += amount;
+        if (blocked != blockers[f] > 0 && !searches.isEmpty()) searches.values().removeIf(s -> s.touches(f));
+    }
+
+    /**
+     * counts all objects again for the current size of the world
+     */
+    private void resize() {
+        width = world.width;
+        height = world.height;
+        blockers = new int[width * height];
+        searches.clear();
+        for (Map.Entry<WorldObj, Integer> e : fields.entrySet()) {
+            int f = field(e.getKey());
+            e.setValue(f);
+            count(f, 1);
+        }
+    }
+
+    /**
+     * brings the counts up to date with the size of the world and the objects moved by writing their fields
+     */
+    private void update() {
+        if (world.width != width || world.height != height) resize();
+        else if (checkedTick != world.ticks) {
+            for (Map.Entry<WorldObj, Integer> e : fields.entrySet()) {
+                int f = field(e.getKey());
+                if (f == e.getValue()) continue;
+                count(e.getValue(), -1);
+                count(f, 1);
+                e.setValue(f);
+            }
+        }
+        checkedTick = world.ticks;
+    }
+
+    /**
+     * checks if any blocking object is on the field
+     * @param x x position of the field
+     * @param y y position of the field
+     * @return if the field is blocked. true outside of the world
+     */
+    public synchronized boolean isBlocked(int x, int y) {
+        update();
+        return !inside(x, y) || blockers[y * width + x] > 0;
+    }
+
+    /**
+     * @param x x position
+     * @param y y position
+     * @return if the field is inside of the world
+     */
+    private boolean inside(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    /**
+     * finds the shortest path between two fields, moving straight and diagonally, see {@link Pathfinder#findPath(int, int, int, int, boolean)}
+     * @param fromX x position of the starting field
+     * @param fromY y position of the starting field
+     * @param toX x position of the goal
+     * @param toY y position of the goal
+     * @return the fields of the path as {x, y}, from the start to the goal, both included. null if there is no path
+     */
+    public List<int[]> findPath(int fromX, int fromY, int toX, int toY) {
+        return findPath(fromX, fromY, toX, toY, true);
+    }
+
+    /**
+     * finds the shortest path between two fields. Diagonal steps cost 1.4 straight steps and must not cut the corner of a blocked field.
+     * The starting field may be blocked, e.g. by the object looking for the path, the goal must not
+     * @param fromX x position of the starting field
+     * @param fromY y position of the starting field
+     * @param toX x position of the goal
+     * @param toY y position of the goal
+     * @param diagonal if diagonal steps are allowed
+     * @return the fields of the path as {x, y}, from the start to the goal, both included. null if there is no path
+     */
+    public synchronized List<int[]> findPath(int fromX, int fromY, int toX, int toY, boolean diagonal) {
+        update();
+        if (!inside(fromX, fromY) || !inside(toX, toY)) return null;
+        int start = fromY * width + fromX, goal = toY * width + toX;
+        if (blockers[goal] > 0) return null;
+        Search s = searches.get(goal * 2 + (diagonal? 1 : 0));
+        if (s == null) {
+            s = new Search(goal, diagonal);
+            searches.put(goal * 2 + (diagonal? 1 : 0), s);
+        }
+        List<int[]> path = new ArrayList<>();
+        if (blockers[start] > 0 && start != goal) {
+            // the search never passes blocked fields, so step onto the best free neighbour first.
+            // All neighbours are searched towards the start, so the open fields are only keyed once
+            int best = -1;
+            long bestCost = Long.MAX_VALUE;
+            for (int d = 0; d < (diagonal? 8 : 4); d++) {
+                int n = step(start, d);
+                if (n < 0 || !s.reach(n, start)) continue;
+                long cost = (long) s.g[n] + (d < 4? STRAIGHT : DIAGONAL);
+                if (cost < bestCost) {
+                    best = n;
+                    bestCost = cost;
+                }
+            }
+            if (best < 0) return null;
+            path.add(new int[] {fromX, fromY});
+            start = best;
+        }
+        else if (!s.reach(start, start)) return null;
+        s.trace(start, path);
+        return path;
+    }
+
+    /**
+     * returns the field reached by a step into the given direction. Diagonal steps must not cut the corner of a blocked field
+     * @param f the index of the field
+     * @param d the direction, see {@link Pathfinder#DX}
+     * @return the index of the reached field. -1 if it is outside of the world or blocked
+     */
+    private int step(int f, int d) {
+        int x = f % width + DX[d], y = f / width + DY[d];
+        if (!inside(x, y) || blockers[y * width + x] > 0) return -1;
+        if (d >= 4 && (blockers[f - f % width + x] > 0 || blockers[y * width + f % width] > 0)) return -1;
+        return y * width + x;
+    }
+
+    /**
+     * @return the amount of blocking objects counted and the amount of searches kept
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("%d blocking objects, %d searches", fields.size(), searches.size());
+    }
+
+    /**
+     * A search from a goal towards the starting fields asked for so far.
+     * The open fields are kept in a binary heap of primitive arrays. Fields getting a shorter distance are pushed again, the outdated entries skipped
+     */
+    private class Search {
+
+        /**
+         * the goal
+         */
+        final int goal;
+
+        /**
+         * if diagonal steps are allowed
+         */
+        final boolean diagonal;
+
+        /**
+         * the distance of each field to the goal. Only the distances of the closed fields are final
+         */
+        final int[] g;
+
+        /**
+         * the state of each field
+         */
+        final byte[] state;
+
+        /**
+         * the open fields and their estimated total cost, as a binary heap
+         */
+        int[] heapFields = new int[64], heapCosts = new int[64];
+        int heapSize;
+
+        /**
+         * the field, the estimated costs in the heap are computed for
+         */
+        int target;
+
+        /**
+         * Creates a new search, with only the goal open
+         * @param goal the goal
+         * @param diagonal if diagonal steps are allowed
+         */
+        Search(int goal, boolean diagonal) {
+            this.goal = goal;
+            this.diagonal = diagonal;
+            g = new int[width * height];
+            state = new byte[width * height];
+            state[goal] = OPEN;
+            target = goal;
+            push(goal, 0);
+        }
+
+        /**
+         * continues the search, until the shortest distance of the start to the goal is known.
+         * The closed distances are exact for any target, the target only decides which fields are closed first
+         * @param start the start
+         * @param target the field the costs are estimated for. The start, or a field next to it
+         * @return if the goal can be reached from the start
+         */
+        boolean reach(int start, int target) {
+            if (state[start] == CLOSED) return true;
+            if (target != this.target) rekey(target);
+            while (heapSize > 0) {
+                int f = heapFields[0], cost = heapCosts[0];
+                pop();
+                if (state[f] == CLOSED || cost != g[f] + estimate(f, target)) continue;
+                state[f] = CLOSED;
+                for (int d = 0; d < (diagonal? 8 : 4); d++) {
+                    int n = step(f, d);
+                    if (n < 0 || state[n] == CLOSED) continue;
+                    int ng = g[f] + (d < 4? STRAIGHT : DIAGONAL);
+                    if (state[n] == NEW || ng < g[n]) {
+                        g[n] = ng;
+                        state[n] = OPEN;
+                        push(n, ng + estimate(n, target));
+                    }
+                }
+                if (f == start) return true;
+            }
+            return false;
+        }
+
+        /**
+         * adds the path from the closed field to the goal, following the fields, whose distance decreases by exactly one step
+         * @param f the closed field
+         * @param path the list the fields are added to, as {x, y}
+         */
+        void trace(int f, List<int[]> path) {
+            path.add(new int[] {f % width, f / width});
+            while (f != goal) {
+                for (int d = 0; d < (diagonal? 8 : 4); d++) {
+                    int n = step(f, d);
+                    if (n >= 0 && state[n] == CLOSED && g[n] + (d < 4? STRAIGHT : DIAGONAL) == g[f]) {
+                        f = n;
+                        break;
+                    }
+                }
+                path.add(new int[] {f % width, f / width});
+            }
+        }
+
+        /**
+         * estimates the distance between two fields, never overestimating it
+         * @param a the index of the first field
+         * @param b the index of the second field
+         * @return the estimated distance
+         */
+        int estimate(int a, int b) {
+            int dx = Math.abs(a % width - b % width), dy = Math.abs(a / width - b / width);
+            if (!diagonal) return STRAIGHT * (dx + dy);
+            return STRAIGHT * Math.max(dx, dy) + (DIAGONAL - STRAIGHT) * Math.min(dx, dy);
+        }
+
+        /**
+         * checks if the blocking or freeing of the field may change the search.
+         * Free neighbours of closed fields are always reached, so a field, whose neighbours were never reached, changes neither a distance nor a step
+         * @param f the index of the field
+         * @return if the field or one of its neighbours has been reached
+         */
+        boolean touches(int f) {
+            int x = f % width, y = f / width;
+            for (int ny = Math.max(0, y - 1); ny <= Math.min(height - 1, y + 1); ny++) {
+                for (int nx = Math.max(0, x - 1); nx <= Math.min(width - 1, x + 1); nx++) {
+                    if (state[ny * width + nx] != NEW) return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * computes the estimated costs of the open fields in the heap for another target and rebuilds the heap.
+         * Outdated entries are dropped on the way, so only the open fields are visited, not the whole world
+         * @param target the new target
+         */
+        void rekey(int target) {
+            int old = this.target, n = 0;
+            this.target = target;
+            for (int i = 0; i < heapSize; i++) {
+                int f = heapFields[i];
+                if (state[f] != OPEN || heapCosts[i] != g[f] + estimate(f, old)) continue;
+                heapFields[n] = f;
+                heapCosts[n++] = g[f] + estimate(f, target);
+            }
+            heapSize = n;
+            for (int i = n / 2 - 1; i >= 0; i--) siftDown(i);
+        }
+
+        /**
+         * adds a field to the heap
+         * @param f the field
+         * @param cost the estimated total cost
+         */
+        void push(int f, int cost) {
+            if (heapSize == heapFields.length) {
+                heapFields = Arrays.copyOf(heapFields, heapSize * 2);
+                heapCosts = Arrays.copyOf(heapCosts, heapSize * 2);
+            }
+            int i = heapSize++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heapCosts[parent] <= cost) break;
+                heapFields[i] = heapFields[parent];
+                heapCosts[i] = heapCosts[parent];
+                i = parent;
+            }
+            heapFields[i] = f;
+            heapCosts[i] = cost;
+        }
+
+        /**
+         * removes the field with the lowest estimated cost from the heap
+         */
+        void pop() {
+            heapFields[0] = heapFields[--heapSize];
+            heapCosts[0] = heapCosts[heapSize];
+            siftDown(0);
+        }
+
+        /**
+         * moves the field at the given position of the heap down, until its children cost more
+         * @param i the position in the heap
+         */
+        void siftDown(int i) {
+            int f = heapFields[i], cost = heapCosts[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= heapSize) break;
+                if (child + 1 < heapSize && heapCosts[child + 1] < heapCosts[child]) child++;
+                if (heapCosts[child] >= cost) break;
+                heapFields[i] = heapFields[child];
+                heapCosts[i] = heapCosts[child];
+                i = child;
+            }
+            heapFields[i] = f;
+            heapCosts[i] = cost;
+        }
+    }
+}
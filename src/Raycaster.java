@@ -0,0 +1,207 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Casts rays along the fields of a world, e.g. for line of sight checks, see {@link World#raycaster(Class)}.
+ * A ray visits exactly the fields its line passes through, from the center of its first field to the center of its last one
+ * (a digital differential analyzer). Lines passing exactly through a corner step diagonally.
+ *
+ * The blocking objects are looked up in the spatial index of the world, if it has one, see {@link World#setSpatialIndex(int)}.
+ * Otherwise, the first ray walks the list of blocking objects once, and the fields of the blocking objects are collected for the following rays,
+ * so a raycaster should only be used for the rays of a single tick.
+ * @param <T> the class or interface of the blocking objects
+ */
+public class Raycaster<T> {
+
+    /**
+     * the class or interface of the blocking objects. Any if null
+     */
+    private final Class<T> cls;
+
+    /**
+     * the spatial index of the world. null, if it has none
+     */
+    private final SpatialHash grid;
+
+    /**
+     * the blocking objects, if the world has no spatial index
+     */
+    private final Iterable<?> objs;
+
+    /**
+     * the first blocking object of each field, keyed by the packed field position. null until the second ray without spatial index
+     */
+    private Map<Long, WorldObj> occupied;
+
+    /**
+     * the amount of rays cast so far
+     */
+    private int rays;
+
+    /**
+     * Creates a new raycaster
+     * @param cls the class or interface of the blocking objects. Any if null
+     * @param grid the spatial index of the world. null, if it has none
+     * @param objs the blocking objects, if the world has no spatial index
+     */
+    Raycaster(Class<T> cls, SpatialHash grid, Iterable<?> objs) {
+        this.cls = cls;
+        this.grid = grid;
+        this.objs = objs;
+    }
+
+    /**
+     * returns the first blocking object along the ray. The starting field is skipped, the target field is included
+     * @param fromX x position of the starting field
+     * @param fromY y position of the starting field
+     * @param toX x position of the target field
+     * @param toY y position of the target field
+     * @return the first blocking object. null, if the ray reaches the target unblocked
+     */
+    public T cast(int fromX, int fromY, int toX, int toY) {
+        return walk(fromX, fromY, toX, toY, true);
+    }
+
+    /**
+     * checks if there is no blocking object between the two fields. Objects on either of the two fields do not count
+     * @param fromX x position of the starting field
+     * @param fromY y position of the starting field
+     * @param toX x position of the target field
+     * @param toY y position of the target field
+     * @return if nothing blocks the line between the fields
+     */
+    public boolean hasLineOfSight(int fromX, int fromY, int toX, int toY) {
+        return walk(fromX, fromY, toX, toY, false) == null;
+    }
+
+    /**
+     * casts many rays at once, see {@link Raycaster#cast(int, int, int, int)}
+     * @param rays the rays, each as {fromX, fromY, toX, toY}
+     * @return the first blocking object of each ray, null for the unblocked ones
+     * @throws IndexOutOfBoundsException if a ray has less than 4 elements
+     */
+    public List<T> cast(List<int[]> rays) {
+        List<T> ret = new ArrayList<>(rays.size());
+        for (int[] r : rays) ret.add(walk(r[0], r[1], r[2], r[3], true));
+        return ret;
+    }
+
+    /**
+     * finds the first blocking object along the line
+     * @param fromX x position of the starting field
+     * @param fromY y position of the starting field
+     * @param toX x position of the target field
+     * @param toY y position of the target field
+     * @param target if the target field is checked as well
+     * @return the first blocking object
+     */
+    @SuppressWarnings("unchecked") // only instances of cls block, unless it is null and T is WorldObj
+    private T walk(int fromX, int fromY, int toX, int toY, boolean target) {
+        WorldObj o = grid == null && rays++ == 0? scan(fromX, fromY, toX, toY, target) : trace(fromX, fromY, toX, toY, target);
+        return (T) o;
+    }
+
+    /**
+     * walks the fields along the line, comparing the distances to the next field border on each axis without rounding
+     * @param fromX x position of the starting field
+     * @param fromY y position of the starting field
+     * @param toX x position of the target field
+     * @param toY y position of the target field
+     * @param target if the target field is checked as well
+     * @return the first blocking object
+     */
+    private WorldObj trace(int fromX, int fromY, int toX, int toY, boolean target) {
+        if (grid == null && occupied == null) {
+            occupied = new HashMap<>();
+            for (Object o : objs) occupied.putIfAbsent(SpatialHash.key(((WorldObj) o).x, ((WorldObj) o).y), (WorldObj) o);
+        }
+        int dx = Math.abs(toX - fromX), dy = Math.abs(toY - fromY);
+        int sx = Integer.signum(toX - fromX), sy = Integer.signum(toY - fromY);
+        int x = fromX, y = fromY, i = 0, j = 0;
+        while (i < dx || j < dy) {
+            // the line crosses the next vertical border at (2i+1)/(2dx) of its length, the next horizontal one at (2j+1)/(2dy)
+            long ex = (2L * i + 1) * dy, ey = (2L * j + 1) * dx;
+            if (ex < ey) {
+                x += sx;
+                i++;
+            }
+            else if (ey < ex) {
+                y += sy;
+                j++;
+            }
+            else {
+                x += sx;
+                y += sy;
+                i++;
+                j++;
+            }
+            if (!target && i == dx && j == dy) return null;
+            WorldObj o = blockerAt(x, y);
+            if (o != null) return o;
+        }
+        return null;
+    }
+
+    /**
+     * finds the first blocking object along the line by walking the blocking objects once, instead of collecting their fields.
+     * The fields of the line within a column are next to each other, so only the first field and step of each column are kept
+     * @param fromX x position of the starting field
+     * @param fromY y position of the starting field
+     * @param toX x position of the target field
+     * @param toY y position of the target field
+     * @param target if the target field is checked as well
+     * @return the first blocking object
+     */
+    private WorldObj scan(int fromX, int fromY, int toX, int toY, boolean target) {
+        int dx = Math.abs(toX - fromX), dy = Math.abs(toY - fromY);
+        int sx = Integer.signum(toX - fromX), sy = Integer.signum(toY - fromY);
+        int[] firstY = new int[dx + 1], firstStep = new int[dx + 1], length = new int[dx + 1];
+        firstY[0] = fromY;
+        length[0] = 1;
+        int y = fromY, i = 0, j = 0, steps = 0;
+        while (i < dx || j < dy) {
+            long ex = (2L * i + 1) * dy, ey = (2L * j + 1) * dx;
+            steps++;
+            if (ey < ex) {
+                y += sy;
+                j++;
+                length[i]++;
+                continue;
+            }
+            if (ex == ey) {
+                y += sy;
+                j++;
+            }
+            i++;
+            firstY[i] = y;
+            firstStep[i] = steps;
+            length[i] = 1;
+        }
+        WorldObj first = null;
+        int firstAt = Integer.MAX_VALUE;
+        for (Object e : objs) {
+            WorldObj o = (WorldObj) e;
+            int c = sx == 0? (o.x == fromX? 0 : -1) : (o.x - fromX) * sx;
+            if (c < 0 || c > dx) continue;
+            int m = sy == 0? (o.y == firstY[c]? 0 : -1) : (o.y - firstY[c]) * sy;
+            if (m < 0 || m >= length[c]) continue;
+            int step = firstStep[c] + m;
+            if (step == 0 || (!target && step == steps) || step >= firstAt) continue;
+            first = o;
+            firstAt = step;
+        }
+        return first;
+    }
+
+    /**
+     * @param x x position of the field
+     * @param y y position of the field
+     * @return a blocking object at the field. null if there is none
+     */
+    private WorldObj blockerAt(int x, int y) {
+        if (grid != null) return grid.first(x, y, cls);
+        return occupied.get(SpatialHash.key(x, y));
+    }
+}
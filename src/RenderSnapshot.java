@@ -0,0 +1,180 @@
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * The state of all objects of a world, as it has been at the end of a tick.
+ * Extracted by the tick thread, so the ui is able to paint it, while the next tick already changes the objects.
+ * Once handed over to the ui, a snapshot is not changed anymore until the ui is done with it.
+ */
+public class RenderSnapshot {
+
+    /**
+     * the amount of objects in the snapshot
+     */
+    private int size;
+
+    /**
+     * the sprites of the objects, in the order they are painted
+     */
+    private AdvancedImage[] imgs;
+
+    /**
+     * the position and rotation of the objects at the end of the tick
+     */
+    private int[] x, y, rotation;
+
+    /**
+     * the position and rotation of the objects before the tick. Same as the current ones, if they did not change or are not interpolated
+     */
+    private int[] prevX, prevY, prevRotation;
+
+    /**
+     * the tick of the world, the snapshot has been extracted at
+     */
+    private long tick;
+
+    /**
+     * the {@link System#nanoTime()} the snapshot has been extracted at
+     */
+    private long extractedAt;
+
+    /**
+     * the expected length of a tick in nanoseconds
+     */
+    private double tickLength;
+
+    /**
+     * Creates a new, empty snapshot
+     * @param capacity the amount of objects the snapshot is able to hold, before it has to grow
+     */
+    RenderSnapshot(int capacity) {
+        capacity = Math.max(capacity, 16);
+        imgs = new AdvancedImage[capacity];
+        x = new int[capacity];
+        y = new int[capacity];
+        rotation = new int[capacity];
+        prevX = new int[capacity];
+        prevY = new int[capacity];
+        prevRotation = new int[capacity];
+    }
+
+    /**
+     * copies the state of the objects into the snapshot, replacing its previous content
+     * @param objs the objects, in the order they are painted
+     * @param tick the tick of the world, which just finished
+     * @param tps the ticks per second of the world
+     */
+    void fill(Collection<WorldObj> objs, long tick, double tps) {
+        ensureCapacity(objs.size());
+        int i = 0;
+        for (WorldObj o : objs) {
+            if (i == imgs.length) ensureCapacity(i+1);
+            // sprites may be drawn onto during the next tick, so the snapshot keeps a copy of their current content
+            imgs[i] = o.img == null? null : o.img.frozen();
+            x[i] = o.x;
+            y[i] = o.y;
+            rotation[i] = o.rotation;
+            boolean changed = o.interpolate && o.changedAt == tick;
+            prevX[i] = changed? o.prevX : o.x;
+            prevY[i] = changed? o.prevY : o.y;
+            prevRotation[i] = changed? o.prevRotation : o.rotation;
+            i++;
+        }
+        // let go of sprites, which are not in the world anymore
+        if (i < size) Arrays.fill(imgs, i, size, null);
+        size = i;
+        this.tick = tick;
+        tickLength = 1e9/tps;
+        extractedAt = System.nanoTime();
+    }
+
+    /**
+     * grows the arrays, so they are able to hold the given amount of objects
+     * @param capacity the needed capacity
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= imgs.length) return;
+        capacity = Math.max(capacity, imgs.length*2);
+        imgs = Arrays.copyOf(imgs, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        rotation = Arrays.copyOf(rotation, capacity);
+        prevX = Arrays.copyOf(prevX, capacity);
+        prevY = Arrays.copyOf(prevY, capacity);
+        prevRotation = Arrays.copyOf(prevRotation, capacity);
+    }
+
+    /**
+     * @return the amount of objects in the snapshot
+     */
+    public int size() {return size;}
+
+    /**
+     * @param i index of the object, in paint order
+     * @return the sprite of the object
+     */
+    public AdvancedImage getImage(int i) {return imgs[i];}
+
+    /**
+     * @param i index of the object, in paint order
+     * @return the x position of the object at the end of the tick
+     */
+    public int getX(int i) {return x[i];}
+
+    /**
+     * @param i index of the object, in paint order
+     * @return the y position of the object at the end of the tick
+     */
+    public int getY(int i) {return y[i];}
+
+    /**
+     * @param i index of the object, in paint order
+     * @return the rotation of the object at the end of the tick
+     */
+    public int getRotation(int i) {return rotation[i];}
+
+    /**
+     * returns the x position of an object, in between the previous and the current tick
+     * @param i index of the object, in paint order
+     * @param alpha how far the object is between the two ticks, between 0 and 1
+     * @return the x position in fields
+     */
+    public double getX(int i, double alpha) {
+        return prevX[i] + (x[i] - prevX[i]) * alpha;
+    }
+
+    /**
+     * returns the y position of an object, in between the previous and the current tick
+     * @param i index of the object, in paint order
+     * @param alpha how far the object is between the two ticks, between 0 and 1
+     * @return the y position in fields
+     */
+    public double getY(int i, double alpha) {
+        return prevY[i] + (y[i] - prevY[i]) * alpha;
+    }
+
+    /**
+     * returns the rotation of an object, in between the previous and the current tick. Turns the shorter way round
+     * @param i index of the object, in paint order
+     * @param alpha how far the object is between the two ticks, between 0 and 1
+     * @return the rotation in degrees
+     */
+    public int getRotation(int i, double alpha) {
+        int turn = ((rotation[i] - prevRotation[i]) % 360 + 540) % 360 - 180;
+        return (int) Math.round(prevRotation[i] + turn * alpha);
+    }
+
+    /**
+     * @return the tick of the world, the snapshot has been extracted at
+     */
+    public long getTick() {return tick;}
+
+    /**
+     * returns how far the display is between the previous and the latest tick, when it is painted now
+     * @return 1 if a whole tick has passed since the extraction, less before that
+     */
+    public double interpolation() {
+        if (tickLength <= 0) return 1;
+        return Math.max(0, Math.min(1, (System.nanoTime() - extractedAt) / tickLength));
+    }
+}
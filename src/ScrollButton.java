@@ -163,14 +163,6 @@ public class ScrollButton extends Button {
 
     }
 
-    /**
-     * does nothing
-     */
-    @Override
-    public void tick() {
-
-    }
-
     /**
      * selects an random entry from the options.
      */
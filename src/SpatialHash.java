@@ -0,0 +1,354 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A uniform grid over the fields of a world, sorting the objects into square cells by their position.
+ * Only the cells, which contain objects, are stored, in a hash table keyed by the packed cell coordinates.
+ * Looking up a field only visits the objects of its cell, a range query only the cells overlapping the range.
+ * See {@link World#setSpatialIndex(int)}
+ */
+public class SpatialHash {
+
+    /**
+     * the amount of fields along each side of a cell
+     */
+    public final int cellSize;
+
+    /**
+     * the packed coordinates of the cells, at the same index as the cell
+     */
+    private long[] keys = new long[64];
+
+    /**
+     * the cells, null for empty slots
+     */
+    private Cell[] cells = new Cell[64];
+
+    /**
+     * the amount of cells stored
+     */
+    private int count;
+
+    /**
+     * Creates a new, empty grid
+     * @param cellSize the amount of fields along each side of a cell
+     * @throws IllegalArgumentException when the cell size is less than 1
+     */
+    SpatialHash(int cellSize) {
+        if (cellSize < 1) throw new IllegalArgumentException("Cell size must be at least 1");
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * packs the coordinates of a cell into a single key
+     * @param cx x coordinate of the cell
+     * @param cy y coordinate of the cell
+     * @return the key
+     */
+    static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param key the key
+     * @return the slot the key would be stored at, when there are no collisions
+     */
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 40) & (keys.length - 1);
+    }
+
+    /**
+     * @param key the packed cell coordinates
+     * @return the cell. null, if it does not contain any objects
+     */
+    private Cell get(long key) {
+        for (int i = slot(key); cells[i] != null; i = (i + 1) & (keys.length - 1)) {
+            if (keys[i] == key) return cells[i];
+        }
+        return null;
+    }
+
+    /**
+     * returns the cell, creating it if it does not exist yet
+     * @param key the packed cell coordinates
+     * @return the cell
+     */
+    private Cell getOrCreate(long key) {
+        int i = slot(key);
+        for (; cells[i] != null; i = (i + 1) & (keys.length - 1)) {
+            if (keys[i] == key) return cells[i];
+        }
+        Cell c = new Cell(key);
+        keys[i] = key;
+        cells[i] = c;
+        if (++count * 2 > keys.length) grow();
+        return c;
+    }
+
+    /**
+     * doubles the size of the table
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        Cell[] oldCells = cells;
+        keys = new long[oldKeys.length * 2];
+        cells = new Cell[oldCells.length * 2];
+        for (int j = 0; j < oldCells.length; j++) {
+            if (oldCells[j] == null) continue;
+            int i = slot(oldKeys[j]);
+            while (cells[i] != null) i = (i + 1) & (keys.length - 1);
+            keys[i] = oldKeys[j];
+            cells[i] = oldCells[j];
+        }
+    }
+
+    /**
+     * removes an empty cell from the table, moving the following cells back, so no lookup gets interrupted by the gap
+     * @param key the packed cell coordinates
+     */
+    private void drop(long key) {
+        int mask = keys.length - 1, i = slot(key);
+        while (keys[i] != key || cells[i] == null) i = (i + 1) & mask;
+        cells[i] = null;
+        count--;
+        for (int j = (i + 1) & mask; cells[j] != null; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            // move the cell into the gap, if the gap lies between its home slot and its current slot
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                cells[i] = cells[j];
+                cells[j] = null;
+                i = j;
+            }
+        }
+    }
+
+    /**
+     * adds an object at its current position
+     * @param o the object
+     */
+    synchronized void insert(WorldObj o) {
+        long key = key(Math.floorDiv(o.x, cellSize), Math.floorDiv(o.y, cellSize));
+        getOrCreate(key).add(o);
+    }
+
+    /**
+     * removes an object
+     * @param o the object
+     */
+    synchronized void remove(WorldObj o) {
+        Cell c = o.cell;
+        if (c == null) return;
+        c.remove(o);
+        if (c.size == 0) drop(c.key);
+    }
+
+    /**
+     * moves the object into the cell of its current position, if it left its cell
+     * @param o the object
+     */
+    synchronized void moved(WorldObj o) {
+        Cell c = o.cell;
+        if (c == null) return;
+        long key = key(Math.floorDiv(o.x, cellSize), Math.floorDiv(o.y, cellSize));
+        if (c.key == key) return;
+        remove(o);
+        getOrCreate(key).add(o);
+    }
+
+    /**
+     * removes all objects
+     */
+    synchronized void clear() {
+        for (Cell c : cells) {
+            if (c != null) c.clear();
+        }
+        Arrays.fill(cells, null);
+        count = 0;
+    }
+
+    /**
+     * returns the objects at the given field
+     * @param x x position
+     * @param y y position
+     * @param cls the class or interface of the objects. Any if null
+     * @param max the maximum amount of objects to return
+     * @return the objects at the field
+     */
+    @SuppressWarnings("unchecked") // the objects are instances of cls, unless it is null and T is WorldObj
+    synchronized <T> List<T> at(int x, int y, Class<T> cls, int max) {
+        List<T> ret = new ArrayList<>();
+        Cell c = get(key(Math.floorDiv(x, cellSize), Math.floorDiv(y, cellSize)));
+        if (c == null) return ret;
+        for (int i = 0; i < c.size && ret.size() < max; i++) {
+            WorldObj o = c.objs[i];
+            if (o.x == x && o.y == y && (cls == null || cls.isInstance(o))) ret.add((T) o);
+        }
+        return ret;
+    }
+
+    /**
+     * returns an object at the given field, without collecting all of them
+     * @param x x position
+     * @param y y position
+     * @param cls the class or interface of the object. Any if null
+     * @return the first object at the field. null if there is none
+     */
+    synchronized WorldObj first(int x, int y, Class<?> cls) {
+        Cell c = get(key(Math.floorDiv(x, cellSize), Math.floorDiv(y, cellSize)));
+        if (c == null) return null;
+        for (int i = 0; i < c.size; i++) {
+            WorldObj o = c.objs[i];
+            if (o.x == x && o.y == y && (cls == null || cls.isInstance(o))) return o;
+        }
+        return null;
+    }
+
+    /**
+     * returns the objects within the given distance of a field. Only the cells overlapping the range are visited
+     * @param x x coordinate of the center
+     * @param y y coordinate of the center
+     * @param range the maximum euclidean distance
+     * @param cls the class or interface of the objects. Any if null
+     * @return the objects in range
+     */
+    synchronized List<WorldObj> inRange(int x, int y, int range, Class<?> cls) {
+        List<WorldObj> ret = new ArrayList<>();
+        if (range < 0) return ret;
+        long r2 = (long) range * range;
+        int minX = Math.floorDiv(x - range, cellSize), maxX = Math.floorDiv(x + range, cellSize);
+        int minY = Math.floorDiv(y - range, cellSize), maxY = Math.floorDiv(y + range, cellSize);
+        // huge ranges cover more cells than there are, so walking the stored cells is cheaper
+        if ((long) (maxX - minX + 1) * (maxY - minY + 1) > count) {
+            for (Cell c : cells) {
+                if (c != null) c.collect(x, y, r2, cls, ret);
+            }
+            return ret;
+        }
+        for (int cx = minX; cx <= maxX; cx++) {
+            for (int cy = minY; cy <= maxY; cy++) {
+                Cell c = get(key(cx, cy));
+                if (c != null) c.collect(x, y, r2, cls, ret);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * returns the objects in the cells overlapping the given rectangle of fields. They may lie outside of it, but within its cells
+     * @param minX x position of the left border, inclusive
+     * @param minY y position of the top border, inclusive
+     * @param maxX x position of the right border, inclusive
+     * @param maxY y position of the bottom border, inclusive
+     * @param out the list the objects are added to
+     */
+    synchronized void candidates(int minX, int minY, int maxX, int maxY, List<WorldObj> out) {
+        int cMinX = Math.floorDiv(minX, cellSize), cMaxX = Math.floorDiv(maxX, cellSize);
+        int cMinY = Math.floorDiv(minY, cellSize), cMaxY = Math.floorDiv(maxY, cellSize);
+        if ((long) (cMaxX - cMinX + 1) * (cMaxY - cMinY + 1) > count) {
+            for (Cell c : cells) {
+                if (c == null) continue;
+                int cx = (int) (c.key >> 32), cy = (int) c.key;
+                if (cx >= cMinX && cx <= cMaxX && cy >= cMinY && cy <= cMaxY) out.addAll(Arrays.asList(c.objs).subList(0, c.size));
+            }
+            return;
+        }
+        for (int cx = cMinX; cx <= cMaxX; cx++) {
+            for (int cy = cMinY; cy <= cMaxY; cy++) {
+                Cell c = get(key(cx, cy));
+                if (c != null) out.addAll(Arrays.asList(c.objs).subList(0, c.size));
+            }
+        }
+    }
+
+    /**
+     * @return the amount of cells containing objects
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * The objects within a single cell
+     */
+    static class Cell {
+
+        /**
+         * the packed coordinates of the cell
+         */
+        final long key;
+
+        /**
+         * the objects, from 0 to size
+         */
+        WorldObj[] objs = new WorldObj[4];
+
+        /**
+         * the amount of objects
+         */
+        int size;
+
+        /**
+         * Creates a new, empty cell
+         * @param key the packed coordinates of the cell
+         */
+        Cell(long key) {
+            this.key = key;
+        }
+
+        /**
+         * adds the object at the end
+         * @param o the object
+         */
+        void add(WorldObj o) {
+            if (size == objs.length) objs = Arrays.copyOf(objs, size * 2);
+            o.cell = this;
+            o.cellIndex = size;
+            objs[size++] = o;
+        }
+
+        /**
+         * removes the object, moving the last object into its place
+         * @param o the object
+         */
+        void remove(WorldObj o) {
+            int i = o.cellIndex;
+            WorldObj last = objs[--size];
+            objs[i] = last;
+            last.cellIndex = i;
+            objs[size] = null;
+            o.cell = null;
+            o.cellIndex = -1;
+        }
+
+        /**
+         * removes all objects
+         */
+        void clear() {
+            for (int i = 0; i < size; i++) {
+                objs[i].cell = null;
+                objs[i].cellIndex = -1;
+            }
+            Arrays.fill(objs, 0, size, null);
+            size = 0;
+        }
+
+        /**
+         * adds the objects of the cell within the given squared distance
+         * @param x x coordinate of the center
+         * @param y y coordinate of the center
+         * @param r2 the squared range
+         * @param cls the class or interface of the objects. Any if null
+         * @param out the list the objects are added to
+         */
+        void collect(int x, int y, long r2, Class<?> cls, List<WorldObj> out) {
+            for (int i = 0; i < size; i++) {
+                WorldObj o = objs[i];
+                long dx = o.x - x, dy = o.y - y;
+                if (dx*dx + dy*dy <= r2 && (cls == null || cls.isInstance(o))) out.add(o);
+            }
+        }
+    }
+}
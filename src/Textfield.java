@@ -56,14 +56,6 @@ public class Textfield extends Button {
         }
     }
 
-    /**
-     * does nothing
-     */
-    @Override
-    public void tick() {
-
-    }
-
     /**
      * sets the Bordercolor, for when the field is selected
      * @param clr the new Color
@@ -0,0 +1,163 @@
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures how long each phase of a tick and each class of {@link Tickable} takes.
+ * Enable it with {@link Engine#enableProfiling()}. While no profiler is set, the engine and worlds skip all measurements.
+ */
+public class TickProfiler {
+
+    /**
+     * The phases of a tick, which are measured separately.
+     */
+    public enum Phase {
+
+        /**
+         * the whole tick of the engine, including all of its tickables
+         */
+        TICK,
+
+        /**
+         * the {@link World#tick()} method of the world
+         */
+        WORLD_TICK,
+
+        /**
+         * handling of the queued key events
+         */
+        KEYS,
+
+        /**
+         * handling of the queued mouse events
+         */
+        MOUSE,
+
+        /**
+         * the ticks of all objects in the world
+         */
+        OBJECTS,
+
+        /**
+         * finding the touching objects and delivering the collision callbacks
+         */
+        COLLISIONS,
+
+        /**
+         * the {@link World#postTick()} method of the world, after all objects have been ticked
+         */
+        POST_UPDATE,
+
+        /**
+         * copying the state of the objects into the snapshot painted by the ui
+         */
+        RENDER_EXTRACT
+    }
+
+    /**
+     * the amount of samples each window keeps
+     */
+    public final int windowSize;
+
+    /**
+     * the timings of each phase
+     */
+    private final TimingWindow[] phases;
+
+    /**
+     * the timings of each class ticked
+     */
+    private final Map<Class<?>, TimingWindow> classes = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new profiler, keeping the latest 1024 samples of each phase and class
+     */
+    public TickProfiler() {
+        this(1024);
+    }
+
+    /**
+     * Creates a new profiler
+     * @param windowSize the amount of samples kept for each phase and class
+     * @throws IllegalArgumentException when the size is less than 1
+     */
+    public TickProfiler(int windowSize) {
+        if (windowSize < 1) throw new IllegalArgumentException("Window size must be at least 1");
+        this.windowSize = windowSize;
+        phases = new TimingWindow[Phase.values().length];
+        for (int i = 0; i < phases.length; i++) phases[i] = new TimingWindow(windowSize);
+    }
+
+    /**
+     * records the duration of a phase
+     * @param phase the phase which just ended
+     * @param start the {@link System#nanoTime()} the phase started at
+     * @return the current {@link System#nanoTime()}, to be used as start of the next phase
+     */
+    public long record(Phase phase, long start) {
+        long now = System.nanoTime();
+        phases[phase.ordinal()].add(now - start);
+        return now;
+    }
+
+    /**
+     * records the duration of a single tick of an object
+     * @param cls the class of the ticked object
+     * @param start the {@link System#nanoTime()} the tick started at
+     * @return the current {@link System#nanoTime()}
+     */
+    public long record(Class<?> cls, long start) {
+        long now = System.nanoTime();
+        classes.computeIfAbsent(cls, c -> new TimingWindow(windowSize)).add(now - start);
+        return now;
+    }
+
+    /**
+     * returns the timings of a phase
+     * @param phase the phase
+     * @return the window of the latest durations of the phase
+     */
+    public TimingWindow get(Phase phase) {
+        return phases[phase.ordinal()];
+    }
+
+    /**
+     * returns the timings of a class. Each sample is the tick of a single object.
+     * @param cls the class of the ticked objects
+     * @return the window of the latest durations, an empty window if no object of the class has been ticked yet
+     */
+    public TimingWindow get(Class<?> cls) {
+        TimingWindow w = classes.get(cls);
+        return w == null? new TimingWindow(1) : w;
+    }
+
+    /**
+     * @return the timings of all classes ticked so far
+     */
+    public Map<Class<?>, TimingWindow> getClasses() {
+        return classes;
+    }
+
+    /**
+     * removes all recorded timings
+     */
+    public void reset() {
+        for (TimingWindow w : phases) w.clear();
+        classes.clear();
+    }
+
+    /**
+     * @return a report of all phases and classes with their p50, p99 and max
+     */
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for (Phase p : Phase.values()) {
+            out.append(String.format("%-14s %s%n", p, get(p)));
+        }
+        Map<String, TimingWindow> sorted = new TreeMap<>();
+        classes.forEach((c, w) -> sorted.put(c.getName(), w));
+        sorted.forEach((c, w) -> out.append(String.format("%-14s %s%n", c, w)));
+        return out.toString();
+    }
+}
@@ -0,0 +1,102 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Schedules the objects of a world, which are not ticked every tick, see {@link WorldObj#setTickInterval(int, int)}.
+ * The objects are put into the slot of the wheel of the tick they are due next, so each tick only the objects of a single slot are visited.
+ * Objects waiting for a later tick cost nothing, except those with an interval longer than the wheel, which are visited once every turn of the wheel.
+ *
+ * Removed objects and objects, which changed their interval, are not taken out of their slot right away,
+ * but dropped, once their slot comes up.
+ */
+public class TickWheel {
+
+    /**
+     * the amount of slots of the wheel. Must be a power of two
+     */
+    static final int SIZE = 256;
+
+    /**
+     * the objects scheduled in each slot
+     */
+    private final List<List<WorldObj>> slots = new ArrayList<>(SIZE);
+
+    /**
+     * the world the objects are in
+     */
+    private final World world;
+
+    /**
+     * the latest tick, the due objects have been collected for. -1 if none
+     */
+    private long collected = -1;
+
+    /**
+     * the amount of entries in all slots, including the ones to be dropped
+     */
+    private int entries;
+
+    /**
+     * Creates a new, empty wheel
+     * @param world the world the objects are in
+     */
+    TickWheel(World world) {
+        this.world = world;
+        for (int i = 0; i < SIZE; i++) slots.add(new ArrayList<>());
+    }
+
+    /**
+     * schedules the object for the next tick it is due in, starting at the given tick.
+     * Ticks, the due objects have already been collected for, are skipped.
+     * @param o the object to schedule
+     * @param from the earliest tick the object may be ticked in
+     */
+    synchronized void schedule(WorldObj o, long from) {
+        from = Math.max(from, collected + 1);
+        int interval = o.getTickInterval();
+        long next = from + Math.floorMod(o.getTickOffset() - from, interval);
+        o.nextTick = next;
+        slots.get((int) (next & (SIZE - 1))).add(o);
+        entries++;
+    }
+
+    /**
+     * collects all objects due in the given tick and schedules them for their next tick.
+     * Has to be called for every tick in order, so no slot is missed.
+     * @param tick the tick of the world
+     * @param due the list the due objects are added to, in the order they were scheduled
+     */
+    synchronized void collect(long tick, List<WorldObj> due) {
+        collected = tick;
+        int index = (int) (tick & (SIZE - 1));
+        List<WorldObj> slot = slots.get(index);
+        if (slot.isEmpty()) return;
+        int kept = 0, size = slot.size();
+        for (int i = 0; i < size; i++) {
+            WorldObj o = slot.get(i);
+            if (o.world != world || o.getTickInterval() <= 1 || o.nextTick < tick) continue;
+            if (o.nextTick > tick) {
+                // scheduled more than one turn ahead. Entries left behind by a rescheduled object are in the wrong slot
+                if ((o.nextTick & (SIZE - 1)) == index) slot.set(kept++, o);
+                continue;
+            }
+            due.add(o);
+            long next = tick + o.getTickInterval();
+            o.nextTick = next;
+            if ((next & (SIZE - 1)) == index) slot.set(kept++, o);
+            else {
+                slots.get((int) (next & (SIZE - 1))).add(o);
+                entries++;
+            }
+        }
+        entries -= size - kept;
+        slot.subList(kept, size).clear();
+    }
+
+    /**
+     * @return the amount of entries in all slots, including the ones of removed objects, which have not been dropped yet
+     */
+    public synchronized int size() {
+        return entries;
+    }
+}
@@ -0,0 +1,188 @@
+import java.util.Arrays;
+
+/**
+ * A rolling window over the latest measured durations.
+ * Once the window is full, every new sample replaces the oldest one.
+ * Optionally samples also leave the window once they are older than a given age.
+ * Recording is cheap, percentiles are computed when they are asked for.
+ */
+public class TimingWindow {
+
+    /**
+     * the latest samples in nanoseconds. used as a ring buffer
+     */
+    private final long[] samples;
+
+    /**
+     * the {@link System#nanoTime()} each sample has been recorded at. null if samples do not age
+     */
+    private final long[] times;
+
+    /**
+     * the age in nanoseconds after which samples leave the window. 0 if they never do
+     */
+    public final long maxAge;
+
+    /**
+     * the index the next sample is written to
+     */
+    private int next;
+
+    /**
+     * the amount of samples recorded in total
+     */
+    private long count;
+
+    /**
+     * Creates a new window
+     * @param size the amount of samples the window keeps
+     * @throws IllegalArgumentException when the size is less than 1
+     */
+    public TimingWindow(int size) {
+        this(size, 0);
+    }
+
+    /**
+     * Creates a new window, whose samples leave it after the given age
+     * @param size the maximum amount of samples the window keeps
+     * @param maxAge the age in nanoseconds, after which samples leave the window. 0 if they never do
+     * @throws IllegalArgumentException when the size is less than 1 or the age is negative
+     */
+    public TimingWindow(int size, long maxAge) {
+        if (size < 1) throw new IllegalArgumentException("Size must be at least 1");
+        if (maxAge < 0) throw new IllegalArgumentException("Age must not be negative");
+        samples = new long[size];
+        times = maxAge == 0? null : new long[size];
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * adds a sample to the window, replacing the oldest one if the window is full
+     * @param nanos the duration in nanoseconds
+     */
+    public void add(long nanos) {
+        add(nanos, times == null? 0 : System.nanoTime());
+    }
+
+    /**
+     * adds a sample to the window, replacing the oldest one if the window is full
+     * @param nanos the duration in nanoseconds
+     * @param now the current {@link System#nanoTime()}, used to age the sample
+     */
+    public synchronized void add(long nanos, long now) {
+        samples[next] = nanos;
+        if (times != null) times[next] = now;
+        next = next+1 == samples.length? 0 : next+1;
+        count++;
+    }
+
+    /**
+     * @return the amount of samples recorded in total, including those which already left the window
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the amount of samples currently in the window
+     */
+    public int size() {
+        return valid().length;
+    }
+
+    /**
+     * @return a copy of the samples currently in the window, in no particular order
+     */
+    private synchronized long[] valid() {
+        int n = (int) Math.min(count, samples.length);
+        if (times == null) return Arrays.copyOf(samples, n);
+        long now = System.nanoTime();
+        long[] ret = new long[n];
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            if (now - times[i] <= maxAge) ret[j++] = samples[i];
+        }
+        return j == n? ret : Arrays.copyOf(ret, j);
+    }
+
+    /**
+     * returns a sorted copy of the samples currently in the window
+     * @return the samples in nanoseconds, sorted ascending
+     */
+    public long[] sorted() {
+        long[] ret = valid();
+        Arrays.sort(ret);
+        return ret;
+    }
+
+    /**
+     * returns the given percentile of the samples in the window
+     * @param percentile the percentile between 0 and 100
+     * @return the duration in nanoseconds, 0 if the window is empty
+     * @throws IllegalArgumentException when the percentile is not between 0 and 100
+     */
+    public long percentile(double percentile) {
+        if (percentile < 0 || percentile > 100) throw new IllegalArgumentException("Percentile has to be between 0 and 100");
+        long[] s = sorted();
+        if (s.length == 0) return 0;
+        int index = (int) Math.ceil(percentile/100*s.length)-1;
+        return s[Math.max(0, Math.min(s.length-1, index))];
+    }
+
+    /**
+     * @return the median duration in nanoseconds
+     */
+    public long p50() {return percentile(50);}
+
+    /**
+     * @return the 99th percentile of the durations in nanoseconds
+     */
+    public long p99() {return percentile(99);}
+
+    /**
+     * @return the longest duration in the window in nanoseconds, 0 if the window is empty
+     */
+    public long max() {
+        long max = 0;
+        for (long l : valid()) max = Math.max(max, l);
+        return max;
+    }
+
+    /**
+     * @return the shortest duration in the window in nanoseconds, 0 if the window is empty
+     */
+    public long min() {
+        long[] v = valid();
+        if (v.length == 0) return 0;
+        long min = Long.MAX_VALUE;
+        for (long l : v) min = Math.min(min, l);
+        return min;
+    }
+
+    /**
+     * @return the average duration in the window in nanoseconds, 0 if the window is empty
+     */
+    public double mean() {
+        long[] v = valid();
+        if (v.length == 0) return 0;
+        long sum = 0;
+        for (long l : v) sum += l;
+        return (double) sum / v.length;
+    }
+
+    /**
+     * removes all samples from the window
+     */
+    public synchronized void clear() {
+        next = 0;
+        count = 0;
+    }
+
+    /**
+     * @return the median, 99th percentile and maximum in milliseconds
+     */
+    @Override
+    public String toString() {
+        return String.format("p50=%.3fms p99=%.3fms max=%.3fms n=%d", p50()/1e6, p99()/1e6, max()/1e6, size());
+    }
+}
@@ -296,6 +296,27 @@ public class Utils {
             return ret;
     }
 
+    /**
+     * Checks if a class overrides a method, declared by one of its superclasses
+     * @param cls the class to check
+     * @param base the class declaring the method. Not counted as overriding it
+     * @param name the name of the method
+     * @param params the types of the parameters of the method
+     * @return if the class or any class between it and the base declares the method
+     */
+    public static boolean overrides(Class<?> cls, Class<?> base, String name, Class<?>... params) {
+        for (Class<?> c = cls; c != null && c != base; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod(name, params);
+                return true;
+            }
+            catch (NoSuchMethodException e) {
+                // not declared here, check the superclass
+            }
+        }
+        return false;
+    }
+
     /**
      *  This method is responsible for extracting resource files from within the .jar to the temporary directory.
      *  @param sourceFile The filepath relative to the 'Resources/' directory within the .jar from which to extract the file.
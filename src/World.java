@@ -3,7 +3,9 @@ import java.awt.event.*;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -33,11 +35,96 @@ public abstract class World implements Tickable {
     public Collection<WorldObj> objects;
 
     /**
-     * The engine the world is running on.
+     * The engine, worlds are running on by default.
      * Default amount of ticks per second: 20
      */
     public static Engine e = new Engine(20);
 
+    /**
+     * The engine this world is running on.
+     * Default value: the shared engine {@link World#e}
+     */
+    public Engine engine;
+
+    /**
+     * If the engine of this world has been created by the world itself and is therefore stopped, once the world moves to another engine.
+     */
+    private boolean ownsEngine;
+
+    /**
+     * The pool, objects implementing {@link ConcurrentTickable} are ticked on.
+     * Default value: {@link ForkJoinPool#commonPool()}
+     */
+    public static ForkJoinPool tickPool = ForkJoinPool.commonPool();
+
+    /**
+     * The minimum amount of {@link ConcurrentTickable} objects in the world, before they are ticked in parallel.
+     * Below that, splitting them up costs more than it saves, so they are ticked one after another.
+     * Default value: 512
+     */
+    public int parallelThreshold = 512;
+
+    /**
+     * Stores the objects of the world. Objects added or removed during a tick are applied at its end
+     */
+    private final ObjectStore store = new ObjectStore(this);
+
+    /**
+     * The objects, which are ticked in parallel during the current tick
+     */
+    private final List<WorldObj> concurrentBatch = new ArrayList<>();
+
+    /**
+     * The objects, which are ticked every tick: awake, overwriting {@link WorldObj#tick()} and without a tick interval.
+     * Objects leaving the set are only dropped, once the next tick walks past them. See {@link World#activate(WorldObj)}
+     */
+    private final List<WorldObj> active = new ArrayList<>();
+
+    /**
+     * Counts the passes over the active objects of all worlds, so duplicate entries are recognized
+     */
+    private static final AtomicLong activePasses = new AtomicLong();
+
+    /**
+     * The latest pass over the active objects of this world
+     */
+    private long activePass;
+
+    /**
+     * If any object with collision layers has been added to the world, so the collision stage has to run
+     */
+    volatile boolean collisions;
+
+    /**
+     * Changes, whenever the field size or the offset of the world changes, so the cached bounds of the objects are recomputed. See {@link WorldObj#getShape()}
+     */
+    volatile int boundsVersion;
+
+    /**
+     * The touching pairs found during the current tick, two entries each
+     */
+    private final List<WorldObj> pairs = new ArrayList<>();
+
+    /**
+     * The pairs touching since the previous tick and the pairs touching in the current tick, keyed by the ids of both objects
+     */
+    private Map<Long, WorldObj[]> contacts = new HashMap<>(), nextContacts = new HashMap<>();
+
+    /**
+     * marks the touching pairs of the current tick, which just started touching
+     */
+    private final BitSet entered = new BitSet();
+
+    /**
+     * Schedules the objects, which are not ticked every tick. See {@link WorldObj#setTickInterval(int, int)}
+     */
+    final TickWheel wheel = new TickWheel(this);
+
+    /**
+     * The objects with a tick interval, which are due during the current tick
+     */
+    private final List<WorldObj> dueBatch = new ArrayList<>();
+
     /**
      * If the world border is a hard edge.
      * Hard edge means, one is unable to go out of bounds, but stays at the border.
@@ -46,20 +133,59 @@ public abstract class World implements Tickable {
     public boolean hardEdge;
 
     /**
-     * The ui of the world. used to draw and Show the world.
+     * The ui of the world. used to draw and Show the world. null for headless worlds
      */
     public WorldUI ui;
 
+    /**
+     * Draws the world, holds its background and paint order. Shared with the {@link World#ui}, headless worlds only have the painter
+     */
+    public final WorldPainter painter;
+
     /**
      * The frame, every world is drawn on.
      */
     public static GameUI mainframe;
 
+    /**
+     * If the world runs without any window.
+     * Headless worlds never create the {@link World#ui} or the {@link World#mainframe}, only handle replayed inputs and are not painted each tick.
+     * Use {@link World#render()} to draw them into an image on request.
+     */
+    public final boolean headless;
+
     /**
      * the random number generator of the world.
      */
     public Random random;
 
+    /**
+     * the seed, the random number generator has been created with. See {@link World#setSeed(long)}
+     */
+    public long seed;
+
+    /**
+     * The amount of ticks this world has executed so far.
+     */
+    public long ticks;
+
+    /**
+     * The recorder currently capturing the inputs of this world. null if not recording.
+     * Only attached at the start of a tick, see {@link InputRecorder#start(World, java.io.OutputStream)}
+     */
+    public volatile InputRecorder recorder;
+
+    /**
+     * The replayer currently feeding recorded inputs to this world. null if not replaying.
+     * Only attached at the start of a tick, see {@link InputReplayer#start(World, java.io.InputStream)}
+     */
+    public volatile InputReplayer replayer;
+
+    /**
+     * Changes handed over from other threads, which are applied by the tick thread at the start of the next tick
+     */
+    private final Queue<Runnable> atNextTick = new ConcurrentLinkedQueue<>();
+
     /**
      * just some private stuff for resizing the world
      */
@@ -80,16 +206,51 @@ public abstract class World implements Tickable {
      * @param pixelSize the size of each field.
      */
     public World(int width, int height, int pixelSize) {
+        this(width, height, pixelSize, GraphicsEnvironment.isHeadless());
+    }
+
+    /**
+     * generates a new world.
+     * @param width amount of fields in the x axis
+     * @param height amount of fields at the y axis
+     * @param pixelSize the size of each field.
+     * @param headless if the world runs without any window. See {@link World#headless}
+     */
+    public World(int width, int height, int pixelSize, boolean headless) {
+        this(width, height, pixelSize, headless, true);
+    }
+
+    /**
+     * generates a new world.
+     * @param width amount of fields in the x axis
+     * @param height amount of fields at the y axis
+     * @param pixelSize the size of each field.
+     * @param headless if the world runs without any window. See {@link World#headless}
+     * @param start if the world starts running on the shared engine right away. Worlds ticked by hand, e.g. by a {@link BatchRunner}, pass false
+     */
+    public World(int width, int height, int pixelSize, boolean headless, boolean start) {
         if(width <= 0 || height <= 0 || pixelSize <= 0) throw new IllegalArgumentException("Size must not be less or equal 0");
-        ui = new WorldUI(pixelSize*width, pixelSize*height, pixelSize);
-        mainframe = mainframe == null?new GameUI("game", this) : mainframe;
+        this.headless = headless;
+        painter = new WorldPainter(pixelSize);
+        if (!headless) {
+            ui = new WorldUI(pixelSize*width, pixelSize*height, painter);
+            ui.addComponentListener(new ComponentAdapter() {
+                @Override
+                public void componentMoved(ComponentEvent e) {
+                    boundsVersion++;
+                }
+            });
+            mainframe = mainframe == null?new GameUI("game", this) : mainframe;
+        }
         this.width = width;
         this.height = height;
         this.pixelSize = pixelSize;
         updateSW();
-        random = new Random();
-        objects = new CopyOnWriteArrayList<>();
-        start();
+        seed = new Random().nextLong();
+        random = new Random(seed);
+        objects = store;
+        engine = e;
+        if (start) start();
     }
 
     /**
@@ -112,7 +273,7 @@ public abstract class World implements Tickable {
     public final void resizeField(int pixelSize) {
         if(width <= 0 || height <= 0 || pixelSize <= 0) throw new IllegalArgumentException("Size must not be less or equal 0");
         this.pixelSize = pixelSize;
-        ui.pxsize = pixelSize;
+        painter.pxsize = pixelSize;
         updateSW();
         updateSize();
     }
@@ -126,7 +287,7 @@ public abstract class World implements Tickable {
         height *= amount;
         if (((width*pixelSize > sw || height*pixelSize > sh)&&amount>1) || ((sw > (width+1)*pixelSize || sh > (height+1)*pixelSize)&&amount <1))
             pixelSize /= amount;
-        ui.pxsize = pixelSize;
+        painter.pxsize = pixelSize;
         updateSize();
     }
 
@@ -135,6 +296,8 @@ public abstract class World implements Tickable {
      */
     public final void updateSize() {
         if(width <= 0 || height <= 0 || pixelSize <= 0) throw new IllegalArgumentException("Size must not be less or equal 0");
+        boundsVersion++;
+        if (ui == null) return;
         ui.setSize(width*pixelSize, height*pixelSize);
         ui.repaint();
     }
@@ -170,14 +333,232 @@ public abstract class World implements Tickable {
     public final int getAbsHeight() {return height*pixelSize;}
 
     /**
-     * gets called every tick. this is the super version of the tick method, calls tick()
+     * gets called every tick. this is the super version of the tick method, calls tick().
+     * A tick runs in stages, one after another:
+     * <ol>
+     *     <li>{@link World#tick()} of the world</li>
+     *     <li>input: the queued key and mouse events are handled</li>
+     *     <li>update: all objects are ticked</li>
+     *     <li>collision: all touching pairs of objects with collision layers are found once and get their collision callbacks</li>
+     *     <li>post-update: {@link World#postTick()}, after all objects moved. Afterwards all objects added or removed during the tick are applied</li>
+     *     <li>render-extract: the state of all objects is copied into a {@link RenderSnapshot}, which the ui paints, while the next tick already runs</li>
+     * </ol>
      */
     public final void _tick() {
+        Runnable r;
+        while ((r = atNextTick.poll()) != null) r.run();
+        TickProfiler p = engine.profiler;
+        long t = p == null? 0 : System.nanoTime();
+        store.beginTick();
         tick();
+        if (p != null) t = p.record(TickProfiler.Phase.WORLD_TICK, t);
         handleKeys();
+        if (p != null) t = p.record(TickProfiler.Phase.KEYS, t);
         handleMouse();
-        objects.forEach(o -> {if (o.world != null) o._tick();});
-        ui.paint(objects);
+        if (p != null) t = p.record(TickProfiler.Phase.MOUSE, t);
+        tickObjects(p);
+        if (p != null) t = p.record(TickProfiler.Phase.OBJECTS, t);
+        collisionStage();
+        if (p != null) t = p.record(TickProfiler.Phase.COLLISIONS, t);
+        postTick();
+        store.endTick();
+        if (p != null) t = p.record(TickProfiler.Phase.POST_UPDATE, t);
+        extractRenderState();
+        if (p != null) p.record(TickProfiler.Phase.RENDER_EXTRACT, t);
+        ticks++;
+    }
+
+    /**
+     * finds all pairs of touching objects, which collide by their layers, and delivers
+     * {@link WorldObj#onCollisionEnter(WorldObj)}, {@link WorldObj#onCollisionStay(WorldObj)} and {@link WorldObj#onCollisionExit(WorldObj)}.
+     * All exits of a tick are delivered before its enters and stays, so an object recycled by a pool exits its old collisions first.
+     * Does nothing, until an object with collision layers has been added to the world.
+     */
+    private void collisionStage() {
+        if (!collisions) return;
+        pairs.clear();
+        entered.clear();
+        getBroadphase().collectPairs(pairs);
+        for (int i = 0; i < pairs.size(); i += 2) {
+            WorldObj a = pairs.get(i), b = pairs.get(i+1);
+            // objects removed earlier in the tick get no callbacks, their partners get the exit below
+            if (a.world != this || b.world != this) continue;
+            long key = contactKey(a, b);
+            WorldObj[] contact = contacts.remove(key);
+            if (contact == null) {
+                nextContacts.put(key, new WorldObj[] {a, b});
+                entered.set(i >> 1);
+            }
+            else {
+                nextContacts.put(key, contact);
+            }
+        }
+        for (WorldObj[] contact : contacts.values()) {
+            if (contact[0].world == this) contact[0].onCollisionExit(contact[1]);
+            if (contact[1].world == this) contact[1].onCollisionExit(contact[0]);
+        }
+        contacts.clear();
+        for (int i = 0; i < pairs.size(); i += 2) {
+            WorldObj a = pairs.get(i), b = pairs.get(i+1);
+            if (a.world != this || b.world != this) {
+                // a pair, which never got its enter, must not get an exit either
+                if (entered.get(i >> 1)) nextContacts.remove(contactKey(a, b));
+                continue;
+            }
+            if (entered.get(i >> 1)) {
+                a.onCollisionEnter(b);
+                if (b.world == this) b.onCollisionEnter(a);
+            }
+            else {
+                a.onCollisionStay(b);
+                if (b.world == this) b.onCollisionStay(a);
+            }
+        }
+        Map<Long, WorldObj[]> tmp = contacts;
+        contacts = nextContacts;
+        nextContacts = tmp;
+        pairs.clear();
+    }
+
+    /**
+     * @param a the first object
+     * @param b the second object
+     * @return the key of the contact of the two objects, the same for either order
+     */
+    private static long contactKey(WorldObj a, WorldObj b) {
+        return a.uid < b.uid? ((long) a.uid << 32) | (b.uid & 0xFFFFFFFFL) : ((long) b.uid << 32) | (a.uid & 0xFFFFFFFFL);
+    }
+
+    /**
+     * gets called every tick, after all objects have been ticked. Does nothing by default.
+     * Overwrite it to react on the final state of the objects, e.g. to resolve collisions or check if the game is over.
+     */
+    public void postTick() {}
+
+    /**
+     * copies the state of all objects into a snapshot and hands it over to the ui.
+     * The ui only ever paints snapshots, so it never sees objects in the middle of a tick.
+     * Does nothing for headless worlds.
+     */
+    private void extractRenderState() {
+        if (headless) return;
+        RenderSnapshot s = ui.obtainBuffer();
+        painter.fill(s, objects, ticks, engine.tps);
+        ui.publish(s);
+    }
+
+    /**
+     * runs the given change on the tick thread, at the start of the next tick, before anything else happens in it.
+     * Used for changes, which must not happen in the middle of a tick, e.g. starting to record the inputs
+     * @param r the change
+     */
+    void atNextTick(Runnable r) {
+        atNextTick.add(r);
+    }
+
+    /**
+     * ticks all objects of the world, which are due this tick.
+     * Objects ticked every tick go first, in the order they became active, followed by the objects with a tick interval, which are due.
+     * Objects, which are asleep or do not overwrite {@link WorldObj#tick()}, are not visited at all.
+     * Objects implementing {@link ConcurrentTickable} are collected and split across the {@link World#tickPool} afterwards,
+     * while all other objects are ticked one after another.
+     * The indexes of the objects moved by a parallel tick are updated on this thread afterwards, so the workers never wait for their locks.
+     * @param p the profiler to record the ticks of each object with. null if not profiling
+     */
+    private void tickObjects(TickProfiler p) {
+        concurrentBatch.clear();
+        long pass = activePass = activePasses.incrementAndGet();
+        // objects may be added from other threads, e.g. by mouse events
+        synchronized (active) {
+            int n = active.size(), kept = 0;
+            for (int i = 0; i < n; i++) {
+                WorldObj o = active.get(i);
+                if (o.activePass == pass || o.listedIn != this) continue;
+                if (!isActive(o)) {
+                    o.listedIn = null;
+                    continue;
+                }
+                o.activePass = pass;
+                active.set(kept++, o);
+                if (o instanceof ConcurrentTickable) concurrentBatch.add(o);
+                else tickObject(o, p);
+            }
+            // keeps the objects, which became active during this tick, for the next one
+            active.subList(kept, n).clear();
+        }
+        wheel.collect(ticks, dueBatch);
+        for (WorldObj o : dueBatch) {
+            if (o instanceof ConcurrentTickable) concurrentBatch.add(o);
+            else tickObject(o, p);
+        }
+        dueBatch.clear();
+        if (concurrentBatch.isEmpty()) return;
+        if (concurrentBatch.size() < parallelThreshold) {
+            concurrentBatch.forEach(o -> tickObject(o, p));
+        }
+        else {
+            for (WorldObj o : concurrentBatch) o.inParallelTick = true;
+            try {
+                tickPool.invoke(new ParallelTick(concurrentBatch, 0, concurrentBatch.size(), p));
+            }
+            finally {
+                for (WorldObj o : concurrentBatch) {
+                    o.inParallelTick = false;
+                    if (!o.movedInParallelTick) continue;
+                    o.movedInParallelTick = false;
+                    ObjectStore s = o.store;
+                    if (s != null) s.moved(o);
+                }
+            }
+        }
+        concurrentBatch.clear();
+    }
+
+    /**
+     * checks if the object has to be ticked every tick
+     * @param o the object to check
+     * @return if the object is in this world, awake, overwrites {@link WorldObj#tick()} and has no tick interval
+     */
+    private boolean isActive(WorldObj o) {
+        return o.world == this && !o.isSleeping() && o.getTickInterval() == 1 && o.overridesTick();
+    }
+
+    /**
+     * adds the object to the active objects, if it has to be ticked every tick and is not listed yet
+     * @param o the object to add
+     */
+    void activate(WorldObj o) {
+        synchronized (active) {
+            if (o.listedIn == this || !isActive(o)) return;
+            o.listedIn = this;
+            active.add(o);
+        }
+    }
+
+    /**
+     * lets the object be ticked by the world, either every tick or by the {@link World#wheel}, when it has a tick interval
+     * @param o the object to tick
+     */
+    void track(WorldObj o) {
+        if (!o.overridesTick()) return;
+        if (o.getTickInterval() > 1) wheel.schedule(o, ticks);
+        else activate(o);
+    }
+
+    /**
+     * ticks a single object, if it is still in a world and awake
+     * @param o the object to tick
+     * @param p the profiler to record the tick with. null if not profiling
+     */
+    private static void tickObject(WorldObj o, TickProfiler p) {
+        if (o.world == null || o.isSleeping()) return;
+        if (p == null) {
+            o._tick();
+            return;
+        }
+        long t = System.nanoTime();
+        o._tick();
+        p.record(o.getClass(), t);
     }
 
     /**
@@ -185,12 +566,51 @@ public abstract class World implements Tickable {
      */
     public abstract void tick();
 
+    /**
+     * handles the queued key events. Only the currently displayed world handles them, worlds running in the background do not consume any input.
+     * While replaying, the recorded events are handled instead.
+     */
     public final void handleKeys() {
-        mainframe.inpManager.handleKeys();
+        boolean focused = mainframe != null && mainframe.world == this;
+        InputReplayer replayer = this.replayer;
+        if (replayer != null) {
+            if (focused) mainframe.inpManager.drainKeys();
+            InputsManager.handleKeys(this, replayer.keys(ticks));
+            return;
+        }
+        if (!focused) return;
+        List<KeyEventInfo> keys = mainframe.inpManager.drainKeys();
+        InputRecorder recorder = this.recorder;
+        if (recorder != null) recorder.recordKeys(ticks, keys);
+        InputsManager.handleKeys(this, keys);
     }
 
+    /**
+     * handles the queued mouse events. Only the currently displayed world handles them, worlds running in the background do not consume any input.
+     * While replaying, the recorded events are handled instead.
+     */
     public final void handleMouse() {
-        mainframe.inpManager.handleMouse();
+        boolean focused = mainframe != null && mainframe.world == this;
+        InputReplayer replayer = this.replayer;
+        if (replayer != null) {
+            if (focused) mainframe.inpManager.drainClicks();
+            replayer.handleMouse(ticks);
+            return;
+        }
+        if (!focused) return;
+        List<MouseEventInfo> clicks = mainframe.inpManager.drainClicks();
+        InputRecorder recorder = this.recorder;
+        if (recorder != null) recorder.recordMouse(ticks, clicks, mainframe.bardim[0], mainframe.bardim[1]);
+        InputsManager.handleMouse(this, clicks, mainframe.bardim[0], mainframe.bardim[1]);
+    }
+
+    /**
+     * resets the random number generator of the world to the given seed, to make it behave the same way again
+     * @param seed the new seed
+     */
+    public final void setSeed(long seed) {
+        this.seed = seed;
+        random.setSeed(seed);
     }
 
     /**
@@ -203,6 +623,58 @@ public abstract class World implements Tickable {
         objects.add(obj);
         obj.setLocation(x,y);
         obj.world = this;
+        if (obj.getCollisionLayers() != 0) collisions = true;
+        synchronized (active) {
+            // an object added again during the tick it has been removed in gets a new entry and waits for the next tick, like any new object
+            obj.listedIn = null;
+            obj.activePass = activePass;
+        }
+        track(obj);
+    }
+
+    /**
+     * takes an object from the pool and adds it to the world, at the given position.
+     * The object returns to the pool by itself, once it is removed from the world.
+     * @param pool the pool to take the object from
+     * @param x the x position of the object
+     * @param y the y position of the object
+     * @return the added object
+     */
+    public final <T extends WorldObj> T addObject(ObjectPool<T> pool, int x, int y) {
+        T obj = pool.acquire();
+        addObject(obj, x, y);
+        return obj;
+    }
+
+    /**
+     * detaches a removed object from the world and gives it back to its pool, if it belongs to one.
+     * During a tick, it only returns to the pool at the end of it, once it has left the store
+     * @param obj the removed object
+     */
+    private void detach(WorldObj obj) {
+        if (obj.world != this) return;
+        obj.world = null;
+        if (obj.pool != null) store.recycle(obj);
+    }
+
+    /**
+     * sorts the objects into a uniform grid of cells by their position, so looking up a field only visits the objects in its cell
+     * and range queries only visit the cells overlapping the range.
+     * Speeds up {@link World#objectsAt(int, int, Class)}, {@link World#isObjectAt(int, int)}, {@link World#objectsInRange(int, int, int, Class)} and alike.
+     * Only enable it, if objects are moved by their setters, e.g. {@link WorldObj#setLocation(int, int)}, as writing to their fields directly is not noticed.
+     * Default value: 0
+     * @param cellSize the amount of fields along each side of a cell, roughly the range of typical queries. 0 to disable the index
+     * @throws IllegalArgumentException when the cell size is negative
+     */
+    public final void setSpatialIndex(int cellSize) {
+        store.setSpatialIndex(cellSize);
+    }
+
+    /**
+     * @return the broadphase, used to find touching objects. See {@link Broadphase}
+     */
+    final Broadphase getBroadphase() {
+        return store.getBroadphase();
     }
 
     /**
@@ -211,7 +683,7 @@ public abstract class World implements Tickable {
      */
     public final void removeObject(WorldObj obj) {
         objects.remove(obj);
-        obj.world = null;
+        detach(obj);
     }
 
     /**
@@ -220,7 +692,7 @@ public abstract class World implements Tickable {
      */
     public final <T extends WorldObj> void removeObjects(Collection<T> objs) {
         objects.removeAll(objs);
-        objs.forEach(o -> o.world = null);
+        objs.forEach(this::detach);
     }
 
     /**
@@ -228,7 +700,7 @@ public abstract class World implements Tickable {
      * @param cls the class of the objects to remove
      */
     public final <T extends WorldObj> void removeObjects(Class<T> cls) {
-        objects.removeAll(objectsOf(cls));
+        removeObjects(objectsOf(cls));
     }
 
     /**
@@ -238,19 +710,20 @@ public abstract class World implements Tickable {
      */
     public final void removeObjectsOfInterface(Class<?> inter) {
         if (inter == null || !inter.isInterface()) throw new IllegalArgumentException("Class must not be null or a non-Interface");
-        objects.removeAll(objectsOfInterface(inter));
+        removeObjects(objectsOfInterface(inter));
     }
 
     /**
      * deltes all objects from the world
      */
     public final void removeAll() {
-        objects.forEach(o -> o.world = null);
+        objects.forEach(this::detach);
         objects.clear();
     }
 
     /**
-     * sets the ticks per second to the given value
+     * sets the ticks per second of the shared engine to the given value.
+     * Worlds running on their own engine are not affected. See {@link World#setWorldTps(double)}
      * @param tps the tps which are gonna be run
      */
     public static void setTps(double tps) {
@@ -258,38 +731,130 @@ public abstract class World implements Tickable {
         e.tps = tps;
     }
 
+    /**
+     * sets the ticks per second of this world.
+     * If the world is running on the shared engine, it gets its own engine instead, so other worlds keep their tps.
+     * @param tps the tps this world is gonna be run at
+     * @throws IllegalArgumentException when the tps are less or equal 0
+     */
+    public final void setWorldTps(double tps) {
+        if (tps <= 0) throw new IllegalArgumentException("Tps must not be less or equal 0");
+        if (engine == e) {
+            setEngine(new Engine(tps, e.tickMode), true);
+        }
+        else {
+            engine.tps = tps;
+        }
+    }
+
+    /**
+     * moves this world onto its own engine, which hands its ticks to the shared pool of {@link Engine#sharedTickPool()}.
+     * This way many background worlds share a few threads, while each of them keeps its own tps.
+     * @param tps the tps this world is gonna be run at
+     * @throws IllegalArgumentException when the tps are less or equal 0
+     */
+    public final void runPooled(double tps) {
+        if (tps <= 0) throw new IllegalArgumentException("Tps must not be less or equal 0");
+        Engine pooled = new Engine(tps, Engine.TickMode.EXECUTOR);
+        pooled.setTickExecutor(Engine.sharedTickPool());
+        setEngine(pooled, true);
+    }
+
+    /**
+     * moves this world onto another engine. If the world is currently running, it keeps running on the new engine.
+     * @param engine the engine to run on
+     * @throws IllegalArgumentException when the engine is null
+     */
+    public final void setEngine(Engine engine) {
+        if (engine == null) throw new IllegalArgumentException("Engine must not be null");
+        setEngine(engine, false);
+    }
+
+    /**
+     * moves this world onto another engine and stops the previous one, if it was created by the world itself.
+     * @param engine the engine to run on
+     * @param owned if the new engine has been created for this world only
+     */
+    private synchronized void setEngine(Engine engine, boolean owned) {
+        Engine old = this.engine;
+        boolean running = isRunning();
+        stop();
+        if (ownsEngine && old != engine) old.stop();
+        this.engine = engine;
+        ownsEngine = owned;
+        if (running) start();
+    }
+
+    /**
+     * @return the engine this world is running on
+     */
+    public final Engine getEngine() {return engine;}
+
+    /**
+     * @return if the world is currently getting ticked by its engine
+     */
+    public final boolean isRunning() {
+        return engine.tickables.contains(this);
+    }
+
     /**
      * starts the engine
      */
     public final void start() {
-        e.addObject(this);
+        if (!isRunning()) engine.addObject(this);
     }
 
     /**
      * stops the engine
      */
     public final void stop() {
-        e.removeObject(this);
+        engine.removeObject(this);
     }
 
     /**
-     * switches the active world
+     * switches the active world.
+     * All worlds running on the shared engine are stopped, worlds running on their own engine keep running in the background.
      * @param world the world to be switched to
+     * @return the worlds, which have been stopped
      */
     public static List<World> switchWorld(World world) {
-        List<World> olds = e.tickables.stream().filter(t -> t instanceof World).map(t -> (World) t).collect(Collectors.toList());
-        e.removeObjects(World.class);
-        e.addObject(world);
+        List<World> olds = e.tickables.stream().filter(t -> t instanceof World && t != world).map(t -> (World) t).collect(Collectors.toList());
+        e.removeObjects(olds);
+        world.start();
         switchFocus(world);
         return olds;
     }
 
     /**
      * switches the focus of the ui to the new world.
+     * Headless worlds are never displayed, so switching to them keeps the current focus.
      * @param world the new world to select
      */
     public static void switchFocus(World world) {
-        mainframe.switchWorld(world);
+        if (world.headless) return;
+        if (mainframe == null) mainframe = new GameUI("game", world);
+        else mainframe.switchWorld(world);
+    }
+
+    /**
+     * draws the world with all of its objects into an image, without the need of a window.
+     * Works for headless worlds as well.
+     * @return the drawn world
+     */
+    public final AdvancedImage render() {
+        return painter.render(objects, width*pixelSize, height*pixelSize);
+    }
+
+    /**
+     * draws the world at its own frame rate, instead of once every tick.
+     * Objects are drawn in between their previous and current position, so they move smoothly, even at low tps.
+     * This delays the displayed world by up to one tick.
+     * @param fps the frames drawn per second, e.g. the refresh rate of the display. 0 to draw once every tick again
+     * @throws IllegalArgumentException when the fps are negative
+     */
+    public final void setFrameRate(int fps) {
+        if (fps < 0) throw new IllegalArgumentException("Frame rate must not be negative");
+        if (ui != null) ui.setFrameRate(fps);
     }
 
     /**
@@ -297,14 +862,15 @@ public abstract class World implements Tickable {
      * @param img the new background
      */
     public final void setBackground(AdvancedImage img) {
-        ui.setBackground(img);
+        if (ui != null) ui.setBackground(img);
+        else painter.backgroundImage = img;
     }
 
     /**
      * Fetches the background image
      * @return the image in the background
      */
-    public final AdvancedImage getBackground() {return ui.backgroundImage;}
+    public final AdvancedImage getBackground() {return painter.backgroundImage;}
 
     /**
      * Returns if an object is exactly at the given position
@@ -313,6 +879,8 @@ public abstract class World implements Tickable {
      * @return if an object is exactly at x, y
      */
     public final boolean isObjectAt(int x, int y) {
+        SpatialHash grid = store.getSpatialIndex();
+        if (grid != null) return !grid.at(x, y, null, 1).isEmpty();
         return objects.stream().anyMatch((o) -> o.x == x && o.y == y);
     }
 
@@ -323,6 +891,9 @@ public abstract class World implements Tickable {
      * @param cls class of objects to check for
      */
     public final <T extends WorldObj> boolean isObjectAt(int x, int y, Class<T> cls) {
+        SpatialHash grid = store.getSpatialIndex();
+        if (grid != null) return !grid.at(x, y, cls, 1).isEmpty();
+        if (cls != null && !store.containsType(cls)) return false;
         return objectsOf(cls).stream().anyMatch(o -> o.x == x && o.y ==y);
     }
 
@@ -333,7 +904,7 @@ public abstract class World implements Tickable {
      */
     public final <T extends WorldObj> List<T> objectsOf(Class<T> cls) {
         if (cls == null) return (List<T>) objects;
-        return objects.stream().filter(cls::isInstance).map(o -> (T) o).collect(Collectors.toList());
+        return store.ofType(cls);
     }
 
     /**
@@ -365,7 +936,7 @@ public abstract class World implements Tickable {
      */
     public final List<WorldObj> objectsOfInterface(Class<?> inter) {
         if (inter == null || !inter.isInterface()) throw new IllegalArgumentException("Class must not be null or a non-Interface");
-        return objects.stream().filter(inter::isInstance).collect(Collectors.toList());
+        return (List<WorldObj>) store.ofType(inter);
     }
 
     /**
@@ -376,6 +947,8 @@ public abstract class World implements Tickable {
      * @return list of objects
      */
     public final <T extends WorldObj> List<T> objectsAt(int x, int y, Class<T> cls) {
+        SpatialHash grid = store.getSpatialIndex();
+        if (grid != null) return grid.at(x, y, cls, Integer.MAX_VALUE);
         return objectsOf(cls).stream().filter(o -> o.x == x && o.y == y).collect(Collectors.toList());
     }
 
@@ -389,16 +962,128 @@ public abstract class World implements Tickable {
      */
     public final List<WorldObj> objectsOfInterfaceAt(int x, int y, Class<?> inter) {
         if (inter == null || !inter.isInterface()) throw new IllegalArgumentException("Class must not be null or a non-Interface");
+        SpatialHash grid = store.getSpatialIndex();
+        // only instances of the interface are returned, which are all WorldObjs
+        @SuppressWarnings("unchecked") Class<WorldObj> cls = (Class<WorldObj>) inter;
+        if (grid != null) return grid.at(x, y, cls, Integer.MAX_VALUE);
         return objectsOfInterface(inter).stream().filter(o -> o.x == x && o.y == y).collect(Collectors.toList());
     }
 
+    /**
+     * returns the objects covering the given point of the frame, see {@link WorldObj#isAt(int, int, boolean)}.
+     * Only the objects near the point are checked, see {@link Broadphase}
+     * @param x x coordinate in the frame
+     * @param y y coordinate in the frame
+     * @return the objects, the topmost first. See {@link World#setPaintOrder(Class[])}
+     */
+    public final List<WorldObj> objectsUnder(int x, int y) {
+        List<WorldObj> ret = new ArrayList<>();
+        getBroadphase().at(x, y, ret);
+        if (ret.size() > 1) ret.sort(Comparator.comparingInt(painter::paintRank).thenComparingInt(o -> -o.storeIndex));
+        return ret;
+    }
+
+    /**
+     * returns the topmost object covering the given point of the frame, see {@link World#objectsUnder(int, int)}
+     * @param x x coordinate in the frame
+     * @param y y coordinate in the frame
+     * @return the object painted on top. null if there is none
+     */
+    public final WorldObj objectUnder(int x, int y) {
+        List<WorldObj> hits = new ArrayList<>();
+        getBroadphase().at(x, y, hits);
+        WorldObj top = null;
+        int topRank = 0;
+        for (WorldObj o : hits) {
+            int rank = painter.paintRank(o);
+            if (top == null || rank < topRank || (rank == topRank && o.storeIndex > top.storeIndex)) {
+                top = o;
+                topRank = rank;
+            }
+        }
+        return top;
+    }
+
+    /**
+     * creates a raycaster for the fields of this world, e.g. for line of sight checks. See {@link Raycaster}.
+     * Without a spatial index, each single ray walks all blocking objects, so cast all rays of a tick with the same raycaster, which collects their fields once
+     * @param cls the class or interface of the objects blocking the rays. Any if null
+     * @return the raycaster
+     */
+    public final <T> Raycaster<T> raycaster(Class<T> cls) {
+        SpatialHash grid = store.getSpatialIndex();
+        if (grid != null) return new Raycaster<>(cls, grid, null);
+        return new Raycaster<>(cls, null, cls == null? objects : store.ofType(cls));
+    }
+
+    /**
+     * returns the first object of the given class along the line between two fields. The starting field is skipped, the target field is included.
+     * For many rays in the same tick, use {@link World#raycaster(Class)}
+     * @param fromX x position of the starting field
+     * @param fromY y position of the starting field
+     * @param toX x position of the target field
+     * @param toY y position of the target field
+     * @param cls the class or interface of the objects blocking the ray. Any if null
+     * @return the first blocking object. null, if the ray reaches the target unblocked
+     */
+    public final <T> T raycast(int fromX, int fromY, int toX, int toY, Class<T> cls) {
+        return raycaster(cls).cast(fromX, fromY, toX, toY);
+    }
+
+    /**
+     * casts many rays at once, see {@link World#raycast(int, int, int, int, Class)}
+     * @param rays the rays, each as {fromX, fromY, toX, toY}
+     * @param cls the class or interface of the objects blocking the rays. Any if null
+     * @return the first blocking object of each ray, null for the unblocked ones
+     */
+    public final <T> List<T> raycast(List<int[]> rays, Class<T> cls) {
+        return raycaster(cls).cast(rays);
+    }
+
+    /**
+     * checks if no object of the given class is between two fields. Objects on either of the two fields do not count.
+     * For many checks in the same tick, use {@link World#raycaster(Class)}
+     * @param fromX x position of the first field
+     * @param fromY y position of the first field
+     * @param toX x position of the second field
+     * @param toY y position of the second field
+     * @param cls the class or interface of the objects blocking the line of sight. Any if null
+     * @return if nothing blocks the line between the fields
+     */
+    public final boolean hasLineOfSight(int fromX, int fromY, int toX, int toY, Class<?> cls) {
+        return raycaster(cls).hasLineOfSight(fromX, fromY, toX, toY);
+    }
+
+    /**
+     * returns the pathfinder finding paths around the objects of the given class. See {@link Pathfinder}.
+     * There is one pathfinder per class, kept up to date as objects are added, moved and removed
+     * @param cls the class or interface of the objects blocking the paths. Any if null
+     * @return the pathfinder
+     */
+    public final Pathfinder pathfinder(Class<?> cls) {
+        return store.getPathfinder(cls);
+    }
+
+    /**
+     * finds the shortest path between two fields around the objects of the given class, see {@link Pathfinder#findPath(int, int, int, int)}
+     * @param fromX x position of the starting field
+     * @param fromY y position of the starting field
+     * @param toX x position of the goal
+     * @param toY y position of the goal
+     * @param cls the class or interface of the objects blocking the path. Any if null
+     * @return the fields of the path as {x, y}, from the start to the goal, both included. null if there is no path
+     */
+    public final List<int[]> findPath(int fromX, int fromY, int toX, int toY, Class<?> cls) {
+        return pathfinder(cls).findPath(fromX, fromY, toX, toY);
+    }
+
     /**
      * sets the order in which the objects are getting painted.
      * @param classes the classes
      */
     @SafeVarargs
     public final void setPaintOrder(Class<? extends WorldObj> ... classes) {
-        ui.setPaintOrder(classes);
+        painter.setPaintOrder(classes);
     }
 
     /**
@@ -406,7 +1091,7 @@ public abstract class World implements Tickable {
      * @return the offset (to add to the point you are looking for) as a Point
      */
     public final Point getOffset() {
-        Point p = ui.getLocation();
+        Point p = ui == null? new Point() : ui.getLocation();
         p.x += (pixelSize/2);
         p.y += (pixelSize/2);
         return p;
@@ -419,7 +1104,7 @@ public abstract class World implements Tickable {
      */
     public final void setBackgroundOpaqueness(double opaque) {
         if (!((0<= opaque) && (opaque <= 1))) throw new IllegalArgumentException("Opaqueness has to be between 0 and 1");
-        ui.setBackgroundOpaqueness(opaque);
+        painter.setBackgroundOpaqueness(opaque);
     }
 
     public String toString() {
@@ -436,7 +1121,12 @@ public abstract class World implements Tickable {
      * @throws NullPointerException if {@param cls} is null
      */
     public List<WorldObj> objectsInRange(int x, int y, int range, Class<?> cls) {
-        return objects.stream().filter(cls::isInstance).filter(o -> o.distanceTo(x,y) <= range).collect(Collectors.toList());
+        SpatialHash grid = store.getSpatialIndex();
+        if (grid != null) return grid.inRange(x, y, range, Objects.requireNonNull(cls));
+        // a new list of objects in the world, so all of them are WorldObjs
+        @SuppressWarnings("unchecked") List<WorldObj> ret = (List<WorldObj>) store.ofType(Objects.requireNonNull(cls));
+        ret.removeIf(o -> o.distanceTo(x,y) > range);
+        return ret;
     }
 
 
@@ -511,4 +1201,60 @@ public abstract class World implements Tickable {
     public void mouseClicked(MouseEvent e, WorldObj obj) {}
     public void mousePressed(MouseEvent e, WorldObj obj) {}
 
+    /**
+     * Ticks a range of {@link ConcurrentTickable} objects, splitting it up until it is small enough.
+     */
+    private static class ParallelTick extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * the amount of objects, which are ticked by a single task without splitting any further
+         */
+        private static final int LEAF_SIZE = 128;
+
+        /**
+         * the objects to tick
+         */
+        private final List<WorldObj> objs;
+
+        /**
+         * the range of the objects, this task ticks
+         */
+        private final int from, to;
+
+        /**
+         * the profiler to record the ticks with. null if not profiling
+         */
+        private final TickProfiler p;
+
+        /**
+         * creates a new task, ticking the objects from (inclusive) to (exclusive)
+         * @param objs the objects to tick
+         * @param from index of the first object
+         * @param to index after the last object
+         * @param p the profiler to record the ticks with. null if not profiling
+         */
+        ParallelTick(List<WorldObj> objs, int from, int to, TickProfiler p) {
+            this.objs = objs;
+            this.from = from;
+            this.to = to;
+            this.p = p;
+        }
+
+        /**
+         * ticks the objects or splits the range in half
+         */
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                for (int i = from; i < to; i++) {
+                    tickObject(objs.get(i), p);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ParallelTick(objs, from, mid, p), new ParallelTick(objs, mid, to, p));
+        }
+    }
 }
@@ -4,8 +4,9 @@ import java.awt.image.BufferedImage;
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * superclass of all objects being able to be added to the world
@@ -13,7 +14,8 @@ import java.util.stream.Collectors;
 public abstract class WorldObj implements Tickable {
 
     /**
-     * The position of the object
+     * The position of the object.
+     * Use the setters to change it, when the world keeps a spatial index, see {@link World#setSpatialIndex(int)}
      */
     public int x, y;
 
@@ -22,6 +24,137 @@ public abstract class WorldObj implements Tickable {
      */
     public int rotation;
 
+    /**
+     * The position and rotation the object had before it got changed during the latest tick it was changed in.
+     * Used to interpolate between ticks, when the world is drawn at its own frame rate. See {@link World#setFrameRate(int)}
+     */
+    public int prevX, prevY, prevRotation;
+
+    /**
+     * The tick of the world, the position or rotation of the object got changed in the last time. -1 if never.
+     */
+    public long changedAt = -1;
+
+    /**
+     * If the object is drawn between its previous and its current position, when the world is drawn at its own frame rate.
+     * Turn it off for objects, which jump around, instead of moving smoothly.
+     * Default value: true
+     */
+    public boolean interpolate = true;
+
+    /**
+     * The amount of ticks between two ticks of the object and the tick in between, the object is ticked in.
+     * See {@link WorldObj#setTickInterval(int, int)}
+     */
+    private int tickInterval = 1, tickOffset;
+
+    /**
+     * The next tick of the world, the object is due in. Only used, when the object is not ticked every tick
+     */
+    long nextTick;
+
+    /**
+     * If the object is asleep and therefore not ticked. See {@link WorldObj#sleep()}
+     */
+    private volatile boolean sleeping;
+
+    /**
+     * The world, the object is listed in as being active. See {@link World#activate(WorldObj)}
+     */
+    World listedIn;
+
+    /**
+     * The pass of the active objects, the object has been ticked in the last time. Used to skip duplicate entries
+     */
+    long activePass;
+
+    /**
+     * The store of the world, the object is in, and its index in there. See {@link ObjectStore}
+     */
+    ObjectStore store;
+    int storeIndex = -1;
+
+    /**
+     * The index of the object within the objects of its class in the store
+     */
+    int classIndex = -1;
+
+    /**
+     * The bounds of the object in pixels, as of the latest check of the broadphase. See {@link Broadphase}.
+     * The maximum is exclusive
+     */
+    int boundsMinX, boundsMinY, boundsMaxX, boundsMaxY;
+
+    /**
+     * The bounds of the default shape in pixels, cached until the position, the sprite or the world changes. See {@link WorldObj#updateShape()}.
+     * The maximum is exclusive
+     */
+    int shapeMinX, shapeMinY, shapeMaxX, shapeMaxY;
+
+    /**
+     * The position, sprite, its alignment and the world, the cached bounds have been computed with
+     */
+    private int shapeX, shapeY;
+    private AdvancedImage shapeImg;
+    private AdvancedImage.ImagePosition shapePos;
+    private World shapeWorld;
+    private int shapeVersion;
+
+    /**
+     * The index of the object in the broadphase and if its bounds are outdated
+     */
+    int sapIndex = -1;
+    boolean sapDirty;
+
+    /**
+     * If the object is being ticked in parallel, and if it has been moved meanwhile, so the indexes of the store
+     * have to be updated after all parallel objects are done. See {@link ObjectStore#moved(WorldObj)}
+     */
+    boolean inParallelTick, movedInParallelTick;
+
+    /**
+     * The cell of the spatial index, the object is in, and its index in there. See {@link SpatialHash}
+     */
+    SpatialHash.Cell cell;
+    int cellIndex = -1;
+
+    /**
+     * The layers the object is on and the layers it collides with, as bits. See {@link WorldObj#setCollisionLayers(int, int)}
+     */
+    private int collisionLayers, collisionMask;
+
+    /**
+     * If only the solid pixels of the sprite touch other objects. See {@link WorldObj#setPreciseCollision(boolean)}
+     */
+    private boolean precise;
+
+    /**
+     * Identifies the object, e.g. to keep track of its collisions.
+     * A pooled object gets a new one, whenever it is used again, so it does not continue the collisions of its previous use
+     */
+    int uid = uids.getAndIncrement();
+
+    /**
+     * Hands out the ids of the objects
+     */
+    private static final AtomicInteger uids = new AtomicInteger();
+
+    /**
+     * The pool the object belongs to and if it is waiting in there to be used again. See {@link ObjectPool}
+     */
+    ObjectPool<?> pool;
+    boolean idle;
+
+    /**
+     * Remembers for every class, if it overrides {@link WorldObj#tick()}. Objects, which do not, are never ticked
+     */
+    private static final ClassValue<Boolean> TICKING = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return Utils.overrides(type, WorldObj.class, "tick");
+        }
+    };
+
     /**
      * The sprite of the Object.
      * If you want to use Buffered images use the {@link AdvancedImage#AdvancedImage(BufferedImage)} constructor
@@ -54,7 +187,9 @@ public abstract class WorldObj implements Tickable {
      * @param x the new x position
      */
     public final void setX(int x) {
+        keepPrevious();
         this.x = world!=null?world.hardEdge?Math.max(0,Math.min(x,world.width-1)):x:x;
+        if (store != null) store.moved(this);
     }
 
     /**
@@ -62,7 +197,20 @@ public abstract class WorldObj implements Tickable {
      * @param y the new y position
      */
     public final void setY(int y) {
+        keepPrevious();
         this.y = world!=null?world.hardEdge?Math.max(0,Math.min(y,world.height-1)):y:y;
+        if (store != null) store.moved(this);
+    }
+
+    /**
+     * remembers the position and rotation the object had before the current tick, when it gets changed the first time during the tick.
+     */
+    private void keepPrevious() {
+        if (world == null || changedAt == world.ticks) return;
+        prevX = x;
+        prevY = y;
+        prevRotation = rotation;
+        changedAt = world.ticks;
     }
 
     /**
@@ -110,7 +258,9 @@ public abstract class WorldObj implements Tickable {
      * @param rot degree of the rotation
      */
     public final void setRotation(int rot) {
+        keepPrevious();
         rotation = rot;
+        if (store != null) store.moved(this);
     }
 
     /**
@@ -118,7 +268,9 @@ public abstract class WorldObj implements Tickable {
      * @param amount the amount to rotate by
      */
     public final void rotate(int amount) {
+        keepPrevious();
         rotation += amount;
+        if (store != null) store.moved(this);
     }
 
     public final int getRotation() {
@@ -131,6 +283,7 @@ public abstract class WorldObj implements Tickable {
      */
     public final void setImage(AdvancedImage img) {
         this.img = img;
+        if (store != null) store.moved(this);
     }
 
     /**
@@ -139,7 +292,7 @@ public abstract class WorldObj implements Tickable {
      * @throws IOException thrown when there is no such image
      */
     public final void setImage(String name) throws IOException {
-        img = new AdvancedImage(ImageIO.read(new File(name)));
+        setImage(new AdvancedImage(ImageIO.read(new File(name))));
     }
 
     /**
@@ -161,9 +314,181 @@ public abstract class WorldObj implements Tickable {
     }
 
     /**
-     * gets called every tick
+     * gets called every tick. Does nothing by default.
+     * Objects, which do not overwrite it, are never visited by the tick of the world at all.
+     */
+    public void tick() {}
+
+    /**
+     * @return if the class of the object overwrites {@link WorldObj#tick()}
+     */
+    final boolean overridesTick() {
+        return TICKING.get(getClass());
+    }
+
+    /**
+     * puts the object to sleep. A sleeping object is not ticked, until it gets woken again, but still painted and found by collision checks.
+     * Use it for objects, which have nothing to do until something happens to them, e.g. a pickup, which waits for the player.
+     */
+    public final void sleep() {
+        sleeping = true;
+    }
+
+    /**
+     * wakes the object, so it gets ticked again, starting with the next tick.
+     * Objects are woken automatically, when the mouse is used on them.
+     */
+    public final void wake() {
+        if (!sleeping) return;
+        sleeping = false;
+        if (world != null) world.activate(this);
+    }
+
+    /**
+     * @return if the object is asleep and therefore not ticked
+     */
+    public final boolean isSleeping() {return sleeping;}
+
+    /**
+     * lets the world check every tick, which objects this one is touching, and deliver the collision callbacks,
+     * instead of checking it in the tick of the object. Two objects collide, when each is on a layer the other one collides with.
+     * E.g. give the player layer 1 and mask 2, enemies layer 2 and mask 1, so the player and enemies collide, but enemies do not collide with each other.
+     * @param layers the layers the object is on, one bit each. 0 to not take part in collisions at all
+     * @param mask the layers the object collides with, one bit each
+     */
+    public final void setCollisionLayers(int layers, int mask) {
+        collisionLayers = layers;
+        collisionMask = mask;
+        if (world != null && layers != 0) world.collisions = true;
+    }
+
+    /**
+     * @return the layers the object is on, one bit each
+     */
+    public final int getCollisionLayers() {return collisionLayers;}
+
+    /**
+     * @return the layers the object collides with, one bit each
+     */
+    public final int getCollisionMask() {return collisionMask;}
+
+    /**
+     * lets only the solid pixels of the sprite touch other objects, instead of its whole bounds, see {@link CollisionMask}.
+     * The bounds are still compared first, so the pixels are only compared for objects, whose bounds overlap.
+     * Has no effect on objects with a custom shape
+     * @param precise if the transparent pixels of the sprite are ignored
+     */
+    public final void setPreciseCollision(boolean precise) {
+        this.precise = precise;
+    }
+
+    /**
+     * @return if only the solid pixels of the sprite touch other objects
+     */
+    public final boolean isPreciseCollision() {return precise;}
+
+    /**
+     * compares the solid pixels of two objects with the default shape, whose bounds overlap. See {@link WorldObj#setPreciseCollision(boolean)}.
+     * Objects without precise collision count as solid all over
+     * @param a the first object
+     * @param b the second object
+     * @return if the objects touch
+     */
+    static boolean pixelsTouch(WorldObj a, WorldObj b) {
+        if (!a.precise) {
+            if (!b.precise) return true;
+            WorldObj t = a;
+            a = b;
+            b = t;
+        }
+        a.updateShape();
+        b.updateShape();
+        CollisionMask m = a.img.getCollisionMask(a.rotation);
+        int x = a.shapeMinX, y = a.shapeMinY;
+        if (!b.precise) return m.any(b.shapeMinX - x, b.shapeMinY - y, b.shapeMaxX - x, b.shapeMaxY - y);
+        return CollisionMask.overlaps(m, x, y, b.img.getCollisionMask(b.rotation), b.shapeMinX, b.shapeMinY);
+    }
+
+    /**
+     * checks if the two objects collide by their layers, see {@link WorldObj#setCollisionLayers(int, int)}
+     * @param a the first object
+     * @param b the second object
+     * @return if each is on a layer the other one collides with
+     */
+    static boolean collides(WorldObj a, WorldObj b) {
+        return (a.collisionLayers & b.collisionMask) != 0 && (b.collisionLayers & a.collisionMask) != 0;
+    }
+
+    /**
+     * gets called in the tick an object with a matching collision layer starts touching this one. Does nothing by default.
+     * See {@link WorldObj#setCollisionLayers(int, int)}
+     * @param other the touching object
+     */
+    public void onCollisionEnter(WorldObj other) {}
+
+    /**
+     * gets called every further tick, an object with a matching collision layer keeps touching this one. Does nothing by default.
+     * @param other the touching object
+     */
+    public void onCollisionStay(WorldObj other) {}
+
+    /**
+     * gets called in the tick an object with a matching collision layer stopped touching this one or left the world. Does nothing by default.
+     * @param other the object, which touched this one
+     */
+    public void onCollisionExit(WorldObj other) {}
+
+    /**
+     * gets called, when the object is taken from its {@link ObjectPool} to be used again. Does nothing by default.
+     * Overwrite it to reset the state of the object, e.g. the remaining life time of a projectile.
+     * Rotation, sleeping and the interpolation state are reset by the pool already.
+     */
+    public void recycle() {}
+
+    /**
+     * resets the state managed by the engine, before the object is used again
+     */
+    final void resetState() {
+        uid = uids.getAndIncrement();
+        rotation = prevRotation = 0;
+        changedAt = -1;
+        sleeping = false;
+    }
+
+    /**
+     * lets the object only be ticked every n-th tick, e.g. for decorations or AI, which only needs to think a few times per second.
+     * The object is ticked in the ticks of the world, which are a multiple of the interval.
+     * @param interval the amount of ticks between two ticks of the object. 1 to tick it every tick
+     */
+    public final void setTickInterval(int interval) {
+        setTickInterval(interval, 0);
+    }
+
+    /**
+     * lets the object only be ticked every n-th tick, e.g. for decorations or AI, which only needs to think a few times per second.
+     * The object is ticked in the ticks of the world, which leave the offset as remainder, when divided by the interval.
+     * Give objects with the same interval different offsets, to spread their ticks evenly.
+     * @param interval the amount of ticks between two ticks of the object. 1 to tick it every tick
+     * @param offset the tick within the interval, the object is ticked in
+     * @throws IllegalArgumentException when the interval is less than 1 or the offset is not between 0 and the interval
+     */
+    public final void setTickInterval(int interval, int offset) {
+        if (interval < 1) throw new IllegalArgumentException("Tick interval must be at least 1");
+        if (offset < 0 || offset >= interval) throw new IllegalArgumentException("Tick offset must be between 0 and the interval");
+        tickInterval = interval;
+        tickOffset = offset;
+        if (world != null) world.track(this);
+    }
+
+    /**
+     * @return the amount of ticks between two ticks of the object
      */
-    public abstract void tick();
+    public final int getTickInterval() {return tickInterval;}
+
+    /**
+     * @return the tick within the interval, the object is ticked in
+     */
+    public final int getTickOffset() {return tickOffset;}
 
     /**
      * checks if the object is at the border of the world
@@ -213,17 +538,51 @@ public abstract class WorldObj implements Tickable {
      * @return the shape of the object
      */
     public Shape getShape() {
-        int[][] dim = getDimension();
-        int[] size = img.getDimension();
-        Point offset = world.getOffset();
-        switch(img.imgpos) {
-            case CENTER:
-                return new Rectangle(dim[0][0] + (this.x*world.pixelSize)+offset.x, dim[0][1] + (this.y*world.pixelSize)+offset.y, size[0], size[1]);
+        updateShape();
+        return new Rectangle(shapeMinX, shapeMinY, shapeMaxX - shapeMinX, shapeMaxY - shapeMinY);
+    }
 
-            case TOP_LEFT:
-                return new Rectangle(x, y, size[0], size[1]);
+    /**
+     * brings the cached bounds of the default shape up to date, see {@link WorldObj#getShape()}.
+     * They are only recomputed, if the position, the sprite or its alignment changed, or the world got resized or moved
+     */
+    final void updateShape() {
+        World world = this.world;
+        AdvancedImage img = this.img;
+        int version = world == null? 0 : world.boundsVersion;
+        if (x == shapeX && y == shapeY && img == shapeImg && world == shapeWorld && version == shapeVersion
+                && (img == null || img.imgpos == shapePos)) return;
+        int minX = 0, minY = 0, w = 0, h = 0;
+        if (img != null) {
+            switch (img.imgpos) {
+                case CENTER:
+                    // removed during the tick, but still known to the broadphase until the end of it
+                    if (world == null) break;
+                    Point offset = world.getOffset();
+                    w = img.getWidth();
+                    h = img.getHeight();
+                    minX = -(w/2) + x*world.pixelSize + offset.x;
+                    minY = -(h/2) + y*world.pixelSize + offset.y;
+                    break;
+
+                case TOP_LEFT:
+                    w = img.getWidth();
+                    h = img.getHeight();
+                    minX = x;
+                    minY = y;
+                    break;
+            }
         }
-        return new Rectangle();
+        shapeMinX = minX;
+        shapeMinY = minY;
+        shapeMaxX = minX + w;
+        shapeMaxY = minY + h;
+        shapeX = x;
+        shapeY = y;
+        shapeImg = img;
+        shapePos = img == null? null : img.imgpos;
+        shapeWorld = world;
+        shapeVersion = version;
     }
 
     /**
@@ -244,6 +603,14 @@ public abstract class WorldObj implements Tickable {
      * @return if the object is interfiering the point
      */
     public final boolean isAt(int x, int y, boolean absolute) {
+        if (!Broadphase.hasCustomShape(this)) {
+            updateShape();
+            int minX = shapeMinX, minY = shapeMinY, maxX = shapeMaxX, maxY = shapeMaxY;
+            if (minX >= maxX || minY >= maxY) return false;
+            if (absolute) return x >= minX && y >= minY && x < maxX && y < maxY;
+            int px = world.pixelSize;
+            return x*px < maxX && y*px < maxY && x*px + px > minX && y*px + px > minY;
+        }
         Shape me = getShape();
         if (absolute) {
             return me.contains(x,y);
@@ -261,27 +628,58 @@ public abstract class WorldObj implements Tickable {
      */
     public boolean isTouching(WorldObj o) {
         if (o == this) return false;
+        if (!Broadphase.hasCustomShape(this) && !Broadphase.hasCustomShape(o)) {
+            // both are rectangles, no need for the expensive area
+            updateShape();
+            o.updateShape();
+            return shapeMinX < shapeMaxX && shapeMinY < shapeMaxY && o.shapeMinX < o.shapeMaxX && o.shapeMinY < o.shapeMaxY
+                    && shapeMinX < o.shapeMaxX && o.shapeMinX < shapeMaxX && shapeMinY < o.shapeMaxY && o.shapeMinY < shapeMaxY
+                    && pixelsTouch(this, o);
+        }
         Area a = new Area(o.getShape());
         a.intersect(new Area(getShape()));
         return !a.isEmpty();
     }
 
     /**
-     * returns if any object of the given class are touching
-     * @param cls the class to check
+     * returns if any object of the given class are touching.
+     * Only the objects near this one are checked, see {@link Broadphase}
+     * @param cls the class to check. any if null
      * @return if any is touching
      */
     public boolean isTouching(Class<?> cls) {
-        return world.objects.stream().filter(cls::isInstance).anyMatch(this::isTouching);
+        return !touching(cls, 1).isEmpty();
     }
 
     /**
-     * returns a list of touching objects
+     * returns a list of touching objects.
+     * Only the objects near this one are checked, see {@link Broadphase}
      * @param cls to check of. any if null
      * @return the list of touching objects
      */
     public List<WorldObj> getTouching(Class<?> cls) {
-        return world.objects.stream().filter(cls::isInstance).filter(this::isTouching).collect(Collectors.toList());
+        return touching(cls, Integer.MAX_VALUE);
+    }
+
+    /**
+     * collects the touching objects
+     * @param cls the class or interface of the objects. any if null
+     * @param max the maximum amount of objects to collect
+     * @return the touching objects
+     */
+    private List<WorldObj> touching(Class<?> cls, int max) {
+        List<WorldObj> ret = new ArrayList<>();
+        if (world == null) return ret;
+        if (Broadphase.hasCustomShape(this)) {
+            // the broadphase does not know the custom shape of this object
+            for (WorldObj o : world.objects) {
+                if (ret.size() >= max) break;
+                if ((cls == null || cls.isInstance(o)) && isTouching(o)) ret.add(o);
+            }
+            return ret;
+        }
+        world.getBroadphase().touching(this, cls, max, ret);
+        return ret;
     }
 
     /**
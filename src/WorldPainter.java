@@ -0,0 +1,267 @@
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.AffineTransformOp;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Draws the background and the objects of a world.
+ * Holds everything needed to do so, e.g. the background and the paint order, but no window,
+ * so headless worlds are able to draw themselves as well. The {@link WorldUI} paints with it onto the screen.
+ */
+public class WorldPainter {
+
+    /**
+     * The background image of the world.
+     */
+    public AdvancedImage backgroundImage;
+
+    /**
+     * The order in which objects are on top and which are at the bottom.
+     */
+    public List<Class<? extends WorldObj>> paintOrder = new ArrayList<>();
+
+    /**
+     * The rank of each class in the paint order, see {@link WorldPainter#paintRank(WorldObj)}, and the paint order they have been looked up in
+     */
+    private final Map<Class<?>, Integer> paintRanks = new HashMap<>();
+    private List<Class<? extends WorldObj>> rankedOrder = Collections.emptyList();
+
+    /**
+     * the objects and their ranks in the order of the world, and the objects in paint order.
+     * Reused by every sort, see {@link WorldPainter#fill(RenderSnapshot, Collection, long, double)}
+     */
+    private WorldObj[] unsorted = new WorldObj[16], sorted = new WorldObj[16];
+    private int[] ranks = new int[16];
+
+    /**
+     * where each rank starts in the sorted objects, the lowest rank last
+     */
+    private int[] rankStarts = new int[1];
+
+    /**
+     * The fieldsize
+     */
+    public int pxsize;
+
+    /**
+     * The opaqueness of the background
+     */
+    public double bg_opaque=1;
+
+    /**
+     * Creates a new painter
+     * @param pxsize size of the fields in px
+     */
+    public WorldPainter(int pxsize) {
+        this.pxsize = pxsize;
+    }
+
+    /**
+     * draws the given objects with the background into a new image
+     * @param objects the objects to draw
+     * @param width the width of the image in px
+     * @param height the height of the image in px
+     * @return the drawn image
+     */
+    public AdvancedImage render(Collection<WorldObj> objects, int width, int height) {
+        AdvancedImage img = new AdvancedImage(Math.max(1, width), Math.max(1, height));
+        RenderSnapshot s = new RenderSnapshot(objects.size());
+        fill(s, objects, -1, 1);
+        Graphics2D g = img.createGraphics();
+        paint(g, s, 1, width, height);
+        g.dispose();
+        return img;
+    }
+
+    /**
+     * paints the background and the objects of the snapshot
+     * @param g the graphics to paint onto
+     * @param s the snapshot of the objects to paint. only the background is painted, if null
+     * @param alpha how far the objects are between their previous and current position. 1 to paint them at their current position
+     * @param width the width of the area to paint in px
+     * @param height the height of the area to paint in px
+     */
+    void paint(Graphics g, RenderSnapshot s, double alpha, int width, int height) {
+        if (backgroundImage != null) {
+            ((Graphics2D) g).setComposite(
+                    AlphaComposite.getInstance(AlphaComposite.SRC_OVER, (float) bg_opaque));
+            switch (backgroundImage.imgs) {
+                case TILE:
+                    AdvancedImage tmp = (new AdvancedImage(backgroundImage)).scale(pxsize, pxsize);
+                    for (int x = 0; x < width; x += pxsize) {
+                        for (int y = 0; y < height; y += pxsize) {
+                            g.drawImage(tmp, x, y, null);
+                        }
+                    }
+                    break;
+
+                case STRETCH:
+                    int hscale = height / backgroundImage.getHeight(null);
+                    int wscale = width / backgroundImage.getWidth(null);
+                    AdvancedImage after = new AdvancedImage(width, height, backgroundImage.getType());
+                    AffineTransform scaleInstance = AffineTransform.getScaleInstance(wscale, hscale);
+                    AffineTransformOp scaleOp = new AffineTransformOp(scaleInstance, AffineTransformOp.TYPE_NEAREST_NEIGHBOR);
+                    scaleOp.filter(backgroundImage, after);
+                    g.drawImage(after, 0, 0, null);
+                    break;
+
+                case NONE:
+                default:
+                    g.drawImage(backgroundImage, 0, 0, null);
+                    break;
+
+            }
+            ((Graphics2D)g).setComposite(
+                    AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1F));
+        }
+
+        if (s == null) return;
+        for (int n = 0; n < s.size(); n++) {
+            AdvancedImage img = s.getImage(n);
+            int x, y, rotation;
+            if (alpha < 1) {
+                x = (int) Math.round(s.getX(n, alpha) * pxsize);
+                y = (int) Math.round(s.getY(n, alpha) * pxsize);
+                rotation = s.getRotation(n, alpha);
+            }
+            else {
+                x = s.getX(n) * pxsize;
+                y = s.getY(n) * pxsize;
+                rotation = s.getRotation(n);
+            }
+
+            AdvancedImage i = new AdvancedImage(pxsize, pxsize, img.getType());
+            int wx = 0, wy = 0, iw = img.getWidth(), ih = img.getHeight();
+            switch (img.imgs) {
+                case TILE:
+                    while (wy < pxsize) {
+                        while (wx < pxsize) {
+                            i.drawImage(img.rotate(rotation), wx, wy, 1);
+                            wx += iw;
+                        }
+                        wx = 0;
+                        wy += ih;
+                    }
+                    break;
+                case STRETCH:
+                    i = img.scale(pxsize, pxsize);
+                    break;
+
+                case CROP:
+                    i.drawImage(img, i.getWidth()/2, i.getHeight()/2);
+                    break;
+
+                case NONE:
+                    i = new AdvancedImage(img);
+                    break;
+            }
+            if (img.imgs == AdvancedImage.ImageSizing.NONE)
+                switch (img.imgpos) {
+                    case CENTER:
+                        x += pxsize/2-img.getWidth(null)/2;
+                        y += pxsize/2-img.getHeight(null)/2;
+                }
+            g.drawImage(i.rotate(rotation), x, y, null);
+        }
+        //objs.forEach((obj, pos) -> g.drawImage(obj.img, pos[0]*pxsize+pxsize/2-obj.img.getWidth(null)/2, pos[1]*pxsize+pxsize/2-obj.img.getHeight(null)/2, null));
+    }
+
+    /**
+     * copies the state of the objects into the snapshot, sorted by the paint order
+     * @param s the snapshot to fill
+     * @param objs the objects, in the order of the world
+     * @param tick the tick of the world, which just finished
+     * @param tps the ticks per second of the world
+     */
+    synchronized void fill(RenderSnapshot s, Collection<WorldObj> objs, long tick, double tps) {
+        int n = sort(objs);
+        s.fill(Arrays.asList(sorted).subList(0, n), tick, tps);
+        Arrays.fill(sorted, 0, n, null);
+    }
+
+    /**
+     * returns a sorted set of the objects, sorted by the pain order
+     * @param objs the objects to be sorted
+     * @return a sorted set
+     */
+    public final synchronized Set<WorldObj> sortObjects(Collection<WorldObj> objs) {
+        int n = sort(objs);
+        Set<WorldObj> ret = new LinkedHashSet<>(Arrays.asList(sorted).subList(0, n));
+        Arrays.fill(sorted, 0, n, null);
+        return ret;
+    }
+
+    /**
+     * sorts the objects into {@link WorldPainter#sorted} by their paint rank, the highest rank first.
+     * Objects of the same rank keep the order of the world, so the ones added last are painted on top
+     * @param objs the objects to be sorted
+     * @return the amount of sorted objects
+     */
+    private int sort(Collection<WorldObj> objs) {
+        List<Class<? extends WorldObj>> po = paintOrder;
+        int k = po.size(), n = 0;
+        for (WorldObj o : objs) {
+            if (n == unsorted.length) {
+                unsorted = Arrays.copyOf(unsorted, n*2);
+                ranks = Arrays.copyOf(ranks, n*2);
+            }
+            unsorted[n] = o;
+            ranks[n++] = Math.min(paintRank(o), k);
+        }
+        if (sorted.length < unsorted.length) sorted = new WorldObj[unsorted.length];
+        if (rankStarts.length < k+2) rankStarts = new int[k+2];
+        Arrays.fill(rankStarts, 0, k+2, 0);
+        // counting sort, the rank r goes into the bucket k-r
+        for (int i = 0; i < n; i++) rankStarts[k - ranks[i] + 1]++;
+        for (int b = 1; b <= k; b++) rankStarts[b] += rankStarts[b-1];
+        for (int i = 0; i < n; i++) sorted[rankStarts[k - ranks[i]]++] = unsorted[i];
+        Arrays.fill(unsorted, 0, n, null);
+        return n;
+    }
+
+    /**
+     * returns how far down the object is painted. Objects with a lower rank are painted on top of the ones with a higher rank,
+     * objects of the same rank in the order of the world, see {@link WorldPainter#sortObjects(Collection)}
+     * @param o the object
+     * @return the index of the first class of the paint order the object is an instance of. The size of the paint order if none
+     */
+    public final synchronized int paintRank(WorldObj o) {
+        List<Class<? extends WorldObj>> po = paintOrder;
+        if (!po.equals(rankedOrder)) {
+            paintRanks.clear();
+            rankedOrder = new ArrayList<>(po);
+        }
+        Integer rank = paintRanks.get(o.getClass());
+        if (rank == null) {
+            rank = po.size();
+            for (int i = 0; i < po.size(); i++) {
+                if (po.get(i).isInstance(o)) {
+                    rank = i;
+                    break;
+                }
+            }
+            paintRanks.put(o.getClass(), rank);
+        }
+        return rank;
+    }
+
+    /**
+     * sets the pain order
+     * @param classes the paint order
+     */
+    @SafeVarargs
+    public final void setPaintOrder(Class<? extends WorldObj>... classes) {
+        paintOrder = Arrays.asList(classes);
+    }
+
+    /**
+     * Sets the background opaquness to the given value.
+     * @param opaque opaqueness to set to
+     * @throws IllegalArgumentException when the opaquness is not between 0 and 1
+     */
+    public void setBackgroundOpaqueness(double opaque) {
+        if (0>opaque || 1<opaque) throw new IllegalArgumentException("Opaquness must be between 0 and 1");
+        bg_opaque = opaque;
+    }
+}
@@ -1,38 +1,47 @@
 import javax.swing.*;
+import javax.swing.Timer;
 import java.awt.*;
 import java.awt.event.KeyListener;
-import java.awt.geom.AffineTransform;
-import java.awt.image.AffineTransformOp;
-import java.awt.image.BufferedImage;
 import java.util.*;
 import java.util.List;
 
 public class WorldUI extends JPanel {
 
     /**
-     * The background image of the world.
+     * Draws the background and the objects, holds the background, paint order and fieldsize
      */
-    public AdvancedImage backgroundImage;
+    public final WorldPainter painter;
 
     /**
-     * the list of objects to draw onto the screen
+     * the objects last handed over by {@link WorldUI#paint(Collection)}. The world hands its objects over as {@link RenderSnapshot} instead
      */
     public List<WorldObj> objs;
 
     /**
-     * The order in which objects are on top and which are at the bottom.
+     * The frames drawn per second. 0 if the ui is drawn once every tick
      */
-    public List<Class<? extends WorldObj>> paintOrder;
+    public int frameRate;
 
     /**
-     * The fieldsize
+     * the timer drawing the frames, when running at its own frame rate
      */
-    public int pxsize;
+    private Timer frameTimer;
 
     /**
-     * The opaqueness of the background
+     * the snapshot, which gets painted with the next frame
      */
-    public double bg_opaque=1;
+    private volatile RenderSnapshot front;
+
+    /**
+     * the snapshot, which is painted at the moment. null if not painting
+     */
+    private volatile RenderSnapshot painting;
+
+    /**
+     * the snapshots, which are reused to extract the state of the world every tick.
+     * At most one is painted and one is waiting to be painted, all others are free to be filled.
+     */
+    private final List<RenderSnapshot> buffers = new ArrayList<>();
 
     /**
      * Creates a new UI with the given height and width
@@ -50,14 +59,23 @@ public class WorldUI extends JPanel {
      * @param pxsize size of the fields in px
      */
     public WorldUI(int width, int height, int pxsize) {
+        this(width, height, new WorldPainter(pxsize));
+    }
+
+    /**
+     * Creates a new UI, which paints with the given painter
+     * @param width width of the ui in px
+     * @param height height of the ui in px
+     * @param painter the painter holding the background, paint order and fieldsize
+     */
+    public WorldUI(int width, int height, WorldPainter painter) {
         super();
         objs = new ArrayList<>();
-        paintOrder = new ArrayList<>();
+        this.painter = painter;
         setSize(width, height);
         setPreferredSize(getSize());
         //setMaximumSize();
         setVisible(true);
-        this.pxsize = pxsize;
     }
 
     /**
@@ -66,7 +84,7 @@ public class WorldUI extends JPanel {
      * @param img the new background image
      */
     public void setBackground(AdvancedImage img) {
-        backgroundImage = img;
+        painter.backgroundImage = img;
         repaint();
     }
 
@@ -77,7 +95,60 @@ public class WorldUI extends JPanel {
     public void paint(Collection<WorldObj> objects) {
         objs = new ArrayList<>();
         objs.addAll(objects);
-        repaint();
+        RenderSnapshot s = obtainBuffer();
+        painter.fill(s, objs, -1, 1);
+        publish(s);
+    }
+
+    /**
+     * returns a snapshot, which is neither painted nor waiting to be painted and is therefore free to be filled.
+     * Only to be called by the thread extracting the snapshots.
+     * @return a free snapshot
+     */
+    RenderSnapshot obtainBuffer() {
+        RenderSnapshot f = front, p = painting;
+        for (RenderSnapshot s : buffers) {
+            if (s != f && s != p) return s;
+        }
+        RenderSnapshot s = new RenderSnapshot(f == null? 16 : f.size());
+        buffers.add(s);
+        return s;
+    }
+
+    /**
+     * hands over a filled snapshot to be painted.
+     * When running at its own frame rate, it is painted with the next frame, otherwise right away.
+     * @param snapshot the snapshot of the world
+     */
+    void publish(RenderSnapshot snapshot) {
+        front = snapshot;
+        if (frameRate <= 0) repaint();
+    }
+
+    /**
+     * draws the ui at its own frame rate, instead of once every tick.
+     * @param fps the frames drawn per second. 0 to draw once every tick
+     * @throws IllegalArgumentException when the fps are negative
+     */
+    public void setFrameRate(int fps) {
+        if (fps < 0) throw new IllegalArgumentException("Frame rate must not be negative");
+        frameRate = fps;
+        if (frameTimer != null) frameTimer.stop();
+        frameTimer = null;
+        if (fps > 0) {
+            frameTimer = new Timer(Math.max(1, 1000/fps), e -> repaint());
+            frameTimer.setCoalesce(true);
+            frameTimer.start();
+        }
+    }
+
+    /**
+     * draws the given objects with the background into a new image, instead of onto the screen
+     * @param objects the objects to draw
+     * @return the drawn image of the size of the ui
+     */
+    public AdvancedImage render(Collection<WorldObj> objects) {
+        return painter.render(objects, getWidth(), getHeight());
     }
 
     /**
@@ -85,96 +156,36 @@ public class WorldUI extends JPanel {
      * @param g the graphics element of the screen
      */
     public void paintComponent(Graphics g) {
-        if (backgroundImage != null) {
-            ((Graphics2D) g).setComposite(
-                    AlphaComposite.getInstance(AlphaComposite.SRC_OVER, (float) bg_opaque));
-            switch (backgroundImage.imgs) {
-                case TILE:
-                    AdvancedImage tmp = (new AdvancedImage(backgroundImage)).scale(pxsize, pxsize);
-                    for (int x = 0; x < getWidth(); x += pxsize) {
-                        for (int y = 0; y < getHeight(); y += pxsize) {
-                            g.drawImage(tmp, x, y, null);
-                        }
-                    }
-                    break;
-
-                case STRETCH:
-                    int hscale = getHeight() / backgroundImage.getHeight(null);
-                    int wscale = getWidth() / backgroundImage.getWidth(null);
-                    AdvancedImage after = new AdvancedImage(getWidth(), getHeight(), backgroundImage.getType());
-                    AffineTransform scaleInstance = AffineTransform.getScaleInstance(wscale, hscale);
-                    AffineTransformOp scaleOp = new AffineTransformOp(scaleInstance, AffineTransformOp.TYPE_NEAREST_NEIGHBOR);
-                    scaleOp.filter(backgroundImage, after);
-                    g.drawImage(after, 0, 0, null);
-                    break;
-
-                case NONE:
-                default:
-                    g.drawImage(backgroundImage, 0, 0, null);
-                    break;
-
-            }
-            ((Graphics2D)g).setComposite(
-                    AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1F));
+        RenderSnapshot s;
+        // make sure the snapshot does not get refilled, while it is painted
+        do {
+            s = front;
+            painting = s;
+        } while (s != front);
+        try {
+            painter.paint(g, s, s == null || frameRate <= 0? 1 : s.interpolation(), getWidth(), getHeight());
+        }
+        finally {
+            painting = null;
         }
-
-        sortObjects(objs).forEach((obj) -> {
-            AdvancedImage img = obj.img;
-            int x = obj.x*pxsize, y = obj.y*pxsize;
-
-            AdvancedImage i = new AdvancedImage(pxsize, pxsize, img.getType());
-            int wx = 0, wy = 0, iw = img.getWidth(), ih = img.getHeight();
-            switch (obj.img.imgs) {
-                case TILE:
-                    while (wy < pxsize) {
-                        while (wx < pxsize) {
-                            i.drawImage(img.rotate(obj.rotation), wx, wy, 1);
-                            wx += iw;
-                        }
-                        wx = 0;
-                        wy += ih;
-                    }
-                    break;
-                case STRETCH:
-                    i = img.scale(pxsize, pxsize);
-                    break;
-
-                case CROP:
-                    i.drawImage(img, i.getWidth()/2, i.getHeight()/2);
-                    break;
-
-                case NONE:
-                    i = new AdvancedImage(img);
-                    break;
-            }
-            if (img.imgs == AdvancedImage.ImageSizing.NONE)
-                switch (img.imgpos) {
-                    case CENTER:
-                        x += pxsize/2-obj.img.getWidth(null)/2;
-                        y += pxsize/2-obj.img.getHeight(null)/2;
-                }
-            g.drawImage(i.rotate(obj.rotation), x, y, null);
-        });
-        //objs.forEach((obj, pos) -> g.drawImage(obj.img, pos[0]*pxsize+pxsize/2-obj.img.getWidth(null)/2, pos[1]*pxsize+pxsize/2-obj.img.getHeight(null)/2, null));
     }
 
     /**
-     * returns a sorted set of the objects, sorted by the pain order
+     * returns a sorted set of the objects, sorted by the pain order, see {@link WorldPainter#sortObjects(Collection)}
      * @param objs the objects to be sorted
      * @return a sorted set
      */
-    public final Set<WorldObj> sortObjects(List<WorldObj> objs) {
-        List<Class<? extends WorldObj>> po = new ArrayList<>(paintOrder);
-        Collections.reverse(po);
-        LinkedHashSet<WorldObj> ret = new LinkedHashSet<>(objs);
-        po.forEach(cls -> {
-            for (WorldObj o : objs) {
-                if (cls.isInstance(o)) {
-                    ret.remove(o);
-                    ret.add(o);
-                }
-            }});
-        return ret;
+    public final Set<WorldObj> sortObjects(Collection<WorldObj> objs) {
+        return painter.sortObjects(objs);
+    }
+
+    /**
+     * returns how far down the object is painted, see {@link WorldPainter#paintRank(WorldObj)}
+     * @param o the object
+     * @return the index of the first class of the paint order the object is an instance of. The size of the paint order if none
+     */
+    public final int paintRank(WorldObj o) {
+        return painter.paintRank(o);
     }
 
     /**
@@ -183,7 +194,7 @@ public class WorldUI extends JPanel {
      */
     @SafeVarargs
     public final void setPaintOrder(Class<? extends WorldObj>... classes) {
-        paintOrder = Arrays.asList(classes);
+        painter.setPaintOrder(classes);
     }
 
     /**
@@ -192,7 +203,6 @@ public class WorldUI extends JPanel {
      * @throws IllegalArgumentException when the opaquness is not between 0 and 1
      */
     public void setBackgroundOpaqueness(double opaque) {
-        if (0>opaque || 1<opaque) throw new IllegalArgumentException("Opaquness must be between 0 and 1");
-        bg_opaque = opaque;
+        painter.setBackgroundOpaqueness(opaque);
     }
 }